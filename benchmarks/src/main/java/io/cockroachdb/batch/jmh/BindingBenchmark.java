@@ -0,0 +1,114 @@
+package io.cockroachdb.batch.jmh;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.cockroachdb.batch.jdbc.CopyBuffer;
+import io.cockroachdb.batch.schema.ColumnBatch;
+import io.cockroachdb.batch.schema.Schema;
+import io.cockroachdb.batch.util.RandomData;
+
+/**
+ * Measures batch generation and the client-side cost of binding a batch
+ * to a no-op prepared statement (as in the batch and values insert tasks),
+ * building column arrays for unnest (as in the array insert task) or encoding
+ * it for COPY, per batch of rows.
+ *
+ * @author Kai Niemi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BindingBenchmark {
+    @Param({"varchar(64)x10", "int8,uuid,ts,decimal,varchar(64)x5,bytes(256),jsonb(32)"})
+    public String schemaSpec;
+
+    @Param({"64", "512"})
+    public int batchSize;
+
+    @Param({"LOW", "MEDIUM"})
+    public RandomData.Entropy entropy;
+
+    private Schema schema;
+
+    private ColumnBatch batch;
+
+    private NoOpPreparedStatement ps;
+
+    private CopyBuffer copyBuffer;
+
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        schema = Schema.parse(schemaSpec, 64);
+        batch = ColumnBatch.generate(batchSize, schema, entropy);
+        ps = new NoOpPreparedStatement();
+        copyBuffer = new CopyBuffer(CopyBuffer.Format.TEXT, 65536);
+        connection = NoOpConnection.create();
+    }
+
+    @Benchmark
+    public ColumnBatch generate() {
+        return ColumnBatch.generate(batchSize, schema, entropy);
+    }
+
+    @Benchmark
+    public long[] bindBatch() throws SQLException {
+        for (int row = 0; row < batch.getRows(); row++) {
+            for (int col = 0; col < batch.getNumCols(); col++) {
+                batch.bind(ps, col + 1, col, row);
+            }
+            ps.addBatch();
+        }
+        return ps.executeLargeBatch();
+    }
+
+    @Benchmark
+    public Object bindMultiRowValues() throws SQLException {
+        int parameterIndex = 1;
+        for (int row = 0; row < batch.getRows(); row++) {
+            for (int col = 0; col < batch.getNumCols(); col++) {
+                batch.bind(ps, parameterIndex++, col, row);
+            }
+        }
+        return ps.getObjectSink();
+    }
+
+    @Benchmark
+    public Object bindArrays() throws SQLException {
+        for (int col = 0; col < batch.getNumCols(); col++) {
+            ps.setArray(col + 1, batch.toArray(connection, col));
+        }
+        return ps.getObjectSink();
+    }
+
+    @Benchmark
+    public int encodeCopy() {
+        copyBuffer.reset();
+        for (int row = 0; row < batch.getRows(); row++) {
+            for (int col = 0; col < batch.getNumCols(); col++) {
+                batch.encode(copyBuffer, col, row);
+            }
+            copyBuffer.endRow();
+        }
+        return copyBuffer.getRowCount();
+    }
+}
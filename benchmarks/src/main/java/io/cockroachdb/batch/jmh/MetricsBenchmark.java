@@ -0,0 +1,124 @@
+package io.cockroachdb.batch.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.cockroachdb.batch.util.Histogram;
+import io.cockroachdb.batch.util.Metrics;
+import io.cockroachdb.batch.util.PhaseTimer;
+
+/**
+ * Measures the cost of recording call metrics on the worker hot path,
+ * uncontended and with many threads recording into shared metrics while
+ * a reader derives percentiles, as the console printer does.
+ *
+ * @author Kai Niemi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+    private final Metrics metrics = Metrics.empty();
+
+    private final Histogram histogram = new Histogram();
+
+    private final PhaseTimer phaseTimer = new PhaseTimer();
+
+    private static long randomLatency() {
+        return ThreadLocalRandom.current().nextLong(100_000, 50_000_000);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void histogramRecord() {
+        histogram.record(randomLatency());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void histogramRecordContended() {
+        histogram.record(randomLatency());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void metricsMarkSuccess() {
+        metrics.markSuccess(randomLatency(), 64);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void metricsMarkSuccessContended() {
+        metrics.markSuccess(randomLatency(), 64);
+    }
+
+    @Benchmark
+    @Group("recordAndRead")
+    @GroupThreads(7)
+    public void recorder() {
+        metrics.markSuccess(randomLatency(), 64);
+    }
+
+    @Benchmark
+    @Group("recordAndRead")
+    @GroupThreads(1)
+    public double reader() {
+        return metrics.getWindowHistogram().getValueAtPercentile(.99);
+    }
+
+    @State(Scope.Thread)
+    public static class TrackerState {
+        private PhaseTimer.Tracker tracker;
+
+        @Setup(Level.Trial)
+        public void attach(MetricsBenchmark benchmark) {
+            tracker = benchmark.phaseTimer.attach();
+        }
+
+        @TearDown(Level.Trial)
+        public void detach() {
+            PhaseTimer.detach();
+        }
+    }
+
+    private static void markPhases(PhaseTimer.Tracker tracker) {
+        tracker.begin();
+        PhaseTimer.mark(PhaseTimer.Phase.GENERATE);
+        PhaseTimer.mark(PhaseTimer.Phase.POOL_WAIT);
+        PhaseTimer.mark(PhaseTimer.Phase.BIND);
+        PhaseTimer.mark(PhaseTimer.Phase.EXECUTE);
+        PhaseTimer.mark(PhaseTimer.Phase.COMMIT);
+        tracker.end();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void phaseTimerMarks(TrackerState state) {
+        markPhases(state.tracker);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void phaseTimerMarksContended(TrackerState state) {
+        markPhases(state.tracker);
+    }
+}
@@ -0,0 +1,95 @@
+package io.cockroachdb.batch.jmh;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.postgresql.PGConnection;
+
+/**
+ * A connection stub that only creates SQL arrays, for measuring the
+ * client-side cost of building column arrays in isolation. Arrays retain
+ * their elements without encoding them, so driver-side array encoding is
+ * not included. Any other method throws {@link UnsupportedOperationException}.
+ *
+ * @author Kai Niemi
+ */
+public abstract class NoOpConnection {
+    private NoOpConnection() {
+    }
+
+    /**
+     * @return a connection that also unwraps to {@link PGConnection}
+     */
+    public static Connection create() {
+        return (Connection) Proxy.newProxyInstance(NoOpConnection.class.getClassLoader(),
+                new Class<?>[] {Connection.class, PGConnection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "createArrayOf" -> new NoOpArray((String) args[0], args[1]);
+                    case "unwrap" -> proxy;
+                    case "isWrapperFor" -> true;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "NoOpConnection";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private record NoOpArray(String typeName, Object elements) implements Array {
+        @Override
+        public String getBaseTypeName() {
+            return typeName;
+        }
+
+        @Override
+        public int getBaseType() {
+            return 0;
+        }
+
+        @Override
+        public Object getArray() {
+            return elements;
+        }
+
+        @Override
+        public Object getArray(Map<String, Class<?>> map) {
+            return elements;
+        }
+
+        @Override
+        public Object getArray(long index, int count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object getArray(long index, int count, Map<String, Class<?>> map) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getResultSet() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getResultSet(Map<String, Class<?>> map) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getResultSet(long index, int count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getResultSet(long index, int count, Map<String, Class<?>> map) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void free() {
+        }
+    }
+}
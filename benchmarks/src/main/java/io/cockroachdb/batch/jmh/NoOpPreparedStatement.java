@@ -0,0 +1,598 @@
+package io.cockroachdb.batch.jmh;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * A prepared statement stub that performs no I/O, for measuring the
+ * client-side cost of parameter binding in isolation. Bound values are
+ * retained in sink fields so the JIT can't eliminate their creation.
+ *
+ * @author Kai Niemi
+ */
+public class NoOpPreparedStatement implements PreparedStatement {
+    private int parameterCount;
+
+    private int batchCount;
+
+    private long longSink;
+
+    private Object objectSink;
+
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    public long getLongSink() {
+        return longSink;
+    }
+
+    public Object getObjectSink() {
+        return objectSink;
+    }
+
+    @Override
+    public void addBatch() {
+        batchCount++;
+    }
+
+    @Override
+    public void addBatch(String sql) {
+    }
+
+    @Override
+    public void cancel() {
+    }
+
+    @Override
+    public void clearBatch() {
+        batchCount = 0;
+    }
+
+    @Override
+    public void clearParameters() {
+    }
+
+    @Override
+    public void clearWarnings() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void closeOnCompletion() {
+    }
+
+    @Override
+    public boolean execute() {
+        return false;
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) {
+        return false;
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) {
+        return false;
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) {
+        return false;
+    }
+
+    @Override
+    public boolean execute(String sql) {
+        return false;
+    }
+
+    @Override
+    public int[] executeBatch() {
+        int[] result = new int[batchCount];
+        Arrays.fill(result, 1);
+        batchCount = 0;
+        return result;
+    }
+
+    @Override
+    public long[] executeLargeBatch() {
+        long[] result = new long[batchCount];
+        Arrays.fill(result, 1);
+        batchCount = 0;
+        return result;
+    }
+
+    @Override
+    public long executeLargeUpdate() {
+        return 1;
+    }
+
+    @Override
+    public ResultSet executeQuery() {
+        return null;
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) {
+        return null;
+    }
+
+    @Override
+    public int executeUpdate() {
+        return 1;
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) {
+        return 0;
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) {
+        return 0;
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) {
+        return 0;
+    }
+
+    @Override
+    public int executeUpdate(String sql) {
+        return 0;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return null;
+    }
+
+    @Override
+    public int getFetchDirection() {
+        return 0;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return 0;
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() {
+        return null;
+    }
+
+    @Override
+    public int getMaxFieldSize() {
+        return 0;
+    }
+
+    @Override
+    public int getMaxRows() {
+        return 0;
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() {
+        return null;
+    }
+
+    @Override
+    public boolean getMoreResults() {
+        return false;
+    }
+
+    @Override
+    public boolean getMoreResults(int current) {
+        return false;
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() {
+        return null;
+    }
+
+    @Override
+    public int getQueryTimeout() {
+        return 0;
+    }
+
+    @Override
+    public ResultSet getResultSet() {
+        return null;
+    }
+
+    @Override
+    public int getResultSetConcurrency() {
+        return 0;
+    }
+
+    @Override
+    public int getResultSetHoldability() {
+        return 0;
+    }
+
+    @Override
+    public int getResultSetType() {
+        return 0;
+    }
+
+    @Override
+    public int getUpdateCount() {
+        return 0;
+    }
+
+    @Override
+    public SQLWarning getWarnings() {
+        return null;
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() {
+        return false;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    @Override
+    public boolean isPoolable() {
+        return false;
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return false;
+    }
+
+    @Override
+    public void setArray(int parameterIndex, Array x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, int length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, long length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setBigDecimal(int parameterIndex, BigDecimal x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, int length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, long length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream x, long length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, Blob x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setBoolean(int parameterIndex, boolean x) {
+        parameterCount++;
+        longSink += x ? 1 : 0;
+    }
+
+    @Override
+    public void setByte(int parameterIndex, byte x) {
+        parameterCount++;
+        longSink += x;
+    }
+
+    @Override
+    public void setBytes(int parameterIndex, byte[] x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader x, int length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader x, long length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader x, long length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Clob x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setCursorName(String name) {
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x, Calendar cal) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setDouble(int parameterIndex, double x) {
+        parameterCount++;
+        longSink += (long) x;
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) {
+    }
+
+    @Override
+    public void setFetchDirection(int direction) {
+    }
+
+    @Override
+    public void setFetchSize(int rows) {
+    }
+
+    @Override
+    public void setFloat(int parameterIndex, float x) {
+        parameterCount++;
+        longSink += (long) x;
+    }
+
+    @Override
+    public void setInt(int parameterIndex, int x) {
+        parameterCount++;
+        longSink += x;
+    }
+
+    @Override
+    public void setLong(int parameterIndex, long x) {
+        parameterCount++;
+        longSink += x;
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) {
+    }
+
+    @Override
+    public void setMaxRows(int max) {
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader x, long length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader x, long length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, NClob x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setNString(int parameterIndex, String x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int sqlType, String typeName) {
+        parameterCount++;
+        longSink += sqlType;
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int sqlType) {
+        parameterCount++;
+        longSink += sqlType;
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int targetSqlType) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) {
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) {
+    }
+
+    @Override
+    public void setRef(int parameterIndex, Ref x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setRowId(int parameterIndex, RowId x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setSQLXML(int parameterIndex, SQLXML x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setShort(int parameterIndex, short x) {
+        parameterCount++;
+        longSink += x;
+    }
+
+    @Override
+    public void setString(int parameterIndex, String x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x, Calendar cal) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setURL(int parameterIndex, URL x) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public void setUnicodeStream(int parameterIndex, InputStream x, int length) {
+        parameterCount++;
+        objectSink = x;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) {
+        return null;
+    }
+}
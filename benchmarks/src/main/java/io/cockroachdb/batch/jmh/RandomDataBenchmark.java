@@ -0,0 +1,63 @@
+package io.cockroachdb.batch.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.cockroachdb.batch.util.RandomData;
+
+/**
+ * Compares the per-character random string generation with the
+ * corpus and pool based generators at different entropy levels.
+ *
+ * @author Kai Niemi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomDataBenchmark {
+    @Param({"16", "64", "256"})
+    public int colSize;
+
+    @Benchmark
+    public String randomStringPerChar() {
+        return RandomData.randomString(colSize);
+    }
+
+    @Benchmark
+    public String randomStringLowEntropy() {
+        return RandomData.randomString(colSize, RandomData.Entropy.LOW);
+    }
+
+    @Benchmark
+    public String randomStringMediumEntropy() {
+        return RandomData.randomString(colSize, RandomData.Entropy.MEDIUM);
+    }
+
+    @Benchmark
+    public String randomStringHighEntropy() {
+        return RandomData.randomString(colSize, RandomData.Entropy.HIGH);
+    }
+
+    @Benchmark
+    public byte[] randomBytesMediumEntropy() {
+        return RandomData.randomBytes(colSize, RandomData.Entropy.MEDIUM);
+    }
+
+    @Benchmark
+    public byte[] randomBytesHighEntropy() {
+        return RandomData.randomBytes(colSize, RandomData.Entropy.HIGH);
+    }
+}
@@ -0,0 +1,400 @@
+package io.cockroachdb.batch;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.cockroachdb.batch.jdbc.ConnectionCallback;
+import io.cockroachdb.batch.jdbc.JdbcUtils;
+import io.cockroachdb.batch.jdbc.SavepointRetry;
+import io.cockroachdb.batch.jdbc.StatementCallback;
+import io.cockroachdb.batch.jdbc.StickySession;
+import io.cockroachdb.batch.schema.ColumnBatch;
+import io.cockroachdb.batch.schema.ColumnSpec;
+import io.cockroachdb.batch.schema.KeyGenerator;
+import io.cockroachdb.batch.schema.KeyReservoir;
+import io.cockroachdb.batch.schema.KeyStrategy;
+import io.cockroachdb.batch.schema.Schema;
+import io.cockroachdb.batch.util.Assert;
+import io.cockroachdb.batch.util.PhaseTimer;
+import io.cockroachdb.batch.util.RandomData;
+import io.cockroachdb.batch.workload.BatchPipeline;
+import io.cockroachdb.batch.workload.Instrumented;
+
+/**
+ * Base for insert tasks sharing the same table parameters and DDL.
+ * Batch generation is separated from execution, which allows batches
+ * to be pre-built by a producer/consumer pipeline when enabled.
+ * <p>
+ * In sticky mode, each worker thread pins one connection and its prepared
+ * statements for its whole lifetime rather than checking out a pooled
+ * connection and preparing statements per batch.
+ * <p>
+ * With savepoint retry, serialization failures in explicit transactions are
+ * retried in place using the cockroach_restart savepoint, keeping the same
+ * connection and batch.
+ * <p>
+ * The primary key strategy decides both the key columns in the DDL and whether
+ * keys are generated server-side or client-side along with each batch.
+ * Client-generated keys of written batches are offered to the table's key
+ * reservoir, for read tasks to look up.
+ *
+ * @param <B> the generated batch type
+ * @author Kai Niemi
+ */
+public abstract class AbstractInsertTask<B> extends AbstractDatabaseTask implements Instrumented {
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final String TABLE_NAME = "t_test";
+
+    private static final String DDL_TEMPLATE = """
+            create table if not exists %s
+            (
+                %s,
+                %s
+            )
+            """;
+
+    private static final String MAX_ID_TEMPLATE = "select coalesce(max(id), 0) from %s";
+
+    private Schema schema;
+
+    private Schema insertSchema;
+
+    private KeyGenerator keyGenerator;
+
+    private KeyReservoir keyReservoir;
+
+    private boolean implicitTxn;
+
+    private RandomData.Entropy entropy;
+
+    private String insertSql;
+
+    private String tableName;
+
+    private BatchPipeline<B> pipeline;
+
+    private boolean sticky;
+
+    private SavepointRetry savepointRetry;
+
+    private final ThreadLocal<StickySession> stickySession = new ThreadLocal<>();
+
+    private final Set<StickySession> stickySessions = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void prepareTask(Map<String, String> params) {
+        this.tableName = params.getOrDefault("tableName", TABLE_NAME);
+
+        String prefix = tableName.equals(TABLE_NAME) ? "" : tableName + ".";
+
+        int numCols = Integer.parseInt(params.getOrDefault(prefix + "numCols", "10"));
+        int colSize = Integer.parseInt(params.getOrDefault(prefix + "colSize", "64"));
+
+        Assert.isTrue(numCols > 0, "numCols must be > 0");
+        Assert.isTrue(colSize > 0, "colSize must be > 0");
+
+        this.schema = params.containsKey(prefix + "schema")
+                ? Schema.parse(params.get(prefix + "schema"), colSize)
+                : Schema.ofVarchar(numCols, colSize);
+        this.implicitTxn = Boolean.parseBoolean(params.getOrDefault(prefix + "implicitTxn", "false"));
+        this.entropy = RandomData.Entropy.parse(params.getOrDefault(prefix + "entropy", "medium"));
+        this.sticky = Boolean.parseBoolean(params.getOrDefault(prefix + "sticky", "false"));
+
+        KeyStrategy keyStrategy = KeyStrategy.parse(params.getOrDefault(prefix + "keyStrategy",
+                getDefaultKeyStrategy().getLabel()));
+        int shardBuckets = Integer.parseInt(params.getOrDefault(prefix + "shardBuckets", "16"));
+        int tenants = Integer.parseInt(params.getOrDefault(prefix + "tenants", "16"));
+
+        int reservoirSize = Integer.parseInt(params.getOrDefault(prefix + "reservoirSize", "100000"));
+
+        Assert.isTrue(shardBuckets > 1, "shardBuckets must be > 1");
+        Assert.isTrue(reservoirSize > 0, "reservoirSize must be > 0");
+
+        this.insertSchema = schema.withKeyColumns(keyStrategy.getKeyColumns());
+        this.keyReservoir = KeyReservoir.forTable(tableName, keyStrategy, reservoirSize);
+
+        logger.debug("Task parameters for %s".formatted(getClass().getSimpleName()));
+        logger.debug("\ttableName: %s".formatted(tableName));
+        logger.debug("\t%s: %s".formatted(prefix + "schema", schema));
+        logger.debug("\t%s: %s".formatted(prefix + "implicitTxn", implicitTxn));
+        logger.debug("\t%s: %s".formatted(prefix + "entropy", entropy));
+        logger.debug("\t%s: %s".formatted(prefix + "sticky", sticky));
+        logger.debug("\t%s: %s".formatted(prefix + "keyStrategy", keyStrategy));
+        if (keyStrategy == KeyStrategy.HASH_SHARDED) {
+            logger.debug("\t%s: %s".formatted(prefix + "shardBuckets", shardBuckets));
+        } else if (keyStrategy == KeyStrategy.TENANT) {
+            logger.debug("\t%s: %s".formatted(prefix + "tenants", tenants));
+        }
+
+        if (Boolean.parseBoolean(params.getOrDefault(prefix + "savepointRetry", "false"))) {
+            int maxAttempts = Integer.parseInt(params.getOrDefault(prefix + "maxAttempts", "10"));
+
+            Assert.isTrue(maxAttempts > 0, "maxAttempts must be > 0");
+
+            if (implicitTxn) {
+                logger.warn("Savepoint retry requires explicit transactions - ignored for %s"
+                        .formatted(tableName));
+            } else {
+                this.savepointRetry = new SavepointRetry(maxAttempts);
+            }
+
+            logger.debug("\t%s: %s".formatted(prefix + "maxAttempts", maxAttempts));
+        }
+
+        prepareParams(params, prefix);
+
+        this.keyGenerator = createKeyGenerator(keyStrategy, tenants);
+
+        if (Boolean.parseBoolean(params.getOrDefault(prefix + "pipeline", "false"))) {
+            int producers = Integer.parseInt(params.getOrDefault(prefix + "producers", "2"));
+            int queueSize = Integer.parseInt(params.getOrDefault(prefix + "queueSize", "64"));
+
+            Assert.isTrue(producers > 0, "producers must be > 0");
+            Assert.isTrue(queueSize > 0, "queueSize must be > 0");
+
+            this.pipeline = new BatchPipeline<>(tableName, this::generateBatch, producers, queueSize);
+
+            logger.debug("\t%s: %s".formatted(prefix + "producers", producers));
+            logger.debug("\t%s: %s".formatted(prefix + "queueSize", queueSize));
+        }
+
+        this.insertSql = createInsertSql(tableName, insertSchema.getColumnNames());
+
+        logger.debug("\tinsertSql: %s".formatted(insertSql));
+
+        JdbcUtils.executeImplicit(getDataSource(), connection -> {
+            List<String> cols = schema.getColumns()
+                    .stream()
+                    .map(ColumnSpec::ddl)
+                    .toList();
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(DDL_TEMPLATE.formatted(tableName,
+                        keyStrategy.ddl(shardBuckets), String.join(",", cols)));
+            }
+
+            return null;
+        });
+
+        if (keyGenerator.isSequential()) {
+            long maxId = JdbcUtils.queryForEntity(getDataSource(), MAX_ID_TEMPLATE.formatted(tableName),
+                    rs -> rs.next() ? rs.getLong(1) : 0);
+            keyGenerator.seed(maxId);
+
+            logger.debug("\tsequence start: %d".formatted(maxId + 1));
+        }
+    }
+
+    /**
+     * Invoked during preparation to parse task specific parameters.
+     *
+     * @param params command-line parameters
+     * @param prefix the table name prefix for table specific parameters, or empty
+     */
+    protected void prepareParams(Map<String, String> params, String prefix) {
+    }
+
+    /**
+     * @return the key strategy unless given by parameters
+     */
+    protected KeyStrategy getDefaultKeyStrategy() {
+        return KeyStrategy.ROWID;
+    }
+
+    /**
+     * Create the client-side key generator, invoked after {@link #prepareParams(Map, String)}.
+     * By default, the generator is shared by all tasks writing to the same table.
+     *
+     * @param strategy the key strategy
+     * @param tenants  the number of tenants (tenant strategy only)
+     * @return the key generator
+     */
+    protected KeyGenerator createKeyGenerator(KeyStrategy strategy, int tenants) {
+        return KeyGenerator.forTable(tableName, strategy, tenants);
+    }
+
+    /**
+     * Create the insert statement executed by this task.
+     *
+     * @param tableName the table name
+     * @param cols      the column names, including any client-generated key columns
+     * @return the SQL statement
+     */
+    protected abstract String createInsertSql(String tableName, List<String> cols);
+
+    @Override
+    public int executeOne(int batchSize) {
+        B batch = pipeline != null ? pipeline.take(batchSize) : generateBatch(batchSize);
+        PhaseTimer.mark(PhaseTimer.Phase.GENERATE);
+        executeBatch(batch);
+        // Only keys of committed rows are offered to readers
+        ColumnBatch columns = getColumns(batch);
+        if (columns != null) {
+            keyReservoir.offer(columns);
+        }
+        return batchSize;
+    }
+
+    /**
+     * Get the generated column values of a batch, for offering client-generated
+     * keys of written batches to the table's key reservoir.
+     *
+     * @param batch the written batch
+     * @return the column values, or null if not available
+     */
+    protected ColumnBatch getColumns(B batch) {
+        return batch instanceof ColumnBatch columnBatch ? columnBatch : null;
+    }
+
+    @Override
+    public void teardownTask() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+        stickySessions.forEach(StickySession::close);
+        stickySessions.clear();
+    }
+
+    @Override
+    public Map<String, String> getLabels() {
+        return Map.of("key_strategy", keyGenerator.getStrategy().getLabel());
+    }
+
+    @Override
+    public Map<String, Number> getGauges() {
+        Map<String, Number> gauges = new LinkedHashMap<>();
+        if (pipeline != null) {
+            gauges.putAll(pipeline.getGauges());
+        }
+        if (savepointRetry != null) {
+            long transactions = savepointRetry.getTransactions();
+            gauges.put("txn-retries", savepointRetry.getRetries());
+            gauges.put("txn-retries-exhausted", savepointRetry.getExhausted());
+            gauges.put("txn-max-attempts", savepointRetry.getMaxAttemptsSeen());
+            gauges.put("txn-avg-attempts", transactions > 0
+                    ? (double) (transactions + savepointRetry.getRetries()) / transactions : 0.0);
+        }
+        if (sticky) {
+            int connects = stickySessions.stream().mapToInt(StickySession::getConnects).sum();
+            gauges.put("sticky-sessions", stickySessions.size());
+            gauges.put("reconnects", connects - stickySessions.size());
+        }
+        return gauges;
+    }
+
+    /**
+     * Generate a batch of rows. Invoked either by the worker thread prior to
+     * execution or by a pipeline producer thread, hence must be thread-safe.
+     *
+     * @param batchSize the number of rows, always > 0
+     * @return the batch
+     */
+    protected abstract B generateBatch(int batchSize);
+
+    /**
+     * Generate the column values of a batch, including any client-generated keys.
+     *
+     * @param batchSize the number of rows
+     * @return the batch
+     */
+    protected ColumnBatch generateColumns(int batchSize) {
+        return ColumnBatch.generate(batchSize, insertSchema, entropy, keyGenerator);
+    }
+
+    /**
+     * Execute a batch previously generated by {@link #generateBatch(int)}.
+     *
+     * @param batch the batch
+     */
+    protected abstract void executeBatch(B batch);
+
+    /**
+     * Execute the callback in an implicit or explicit transaction depending on parameters.
+     * The callback may be re-run in the same transaction if savepoint retry is enabled.
+     *
+     * @param action the connection callback
+     */
+    protected void execute(ConnectionCallback<Void> action) {
+        execute(action, false);
+    }
+
+    /**
+     * Execute the callback in an implicit or explicit transaction depending on parameters,
+     * or always in an explicit transaction if the callback must be atomic.
+     *
+     * @param action the connection callback
+     * @param atomic true if the callback executes several statements that must commit together
+     */
+    protected void execute(ConnectionCallback<Void> action, boolean atomic) {
+        final boolean implicit = implicitTxn && !atomic;
+        if (savepointRetry != null) {
+            action = savepointRetry.wrap(action);
+        }
+        if (sticky) {
+            getStickySession().execute(implicit, action);
+        } else if (implicit) {
+            JdbcUtils.executeImplicit(getDataSource(), action);
+        } else {
+            JdbcUtils.executeExplicit(getDataSource(), action);
+        }
+    }
+
+    /**
+     * Execute the callback with a prepared statement for the given SQL. In sticky
+     * mode, the statement is cached on the worker's pinned connection and left open,
+     * otherwise it's prepared on the given connection and closed after use.
+     *
+     * @param connection the connection passed to the enclosing callback
+     * @param sql        the SQL statement
+     * @param action     the statement callback
+     * @param <T>        the result entity type
+     * @return any result entity from the callback
+     * @throws SQLException on any SQL exception
+     */
+    protected <T> T executeStatement(Connection connection, String sql, StatementCallback<T> action)
+            throws SQLException {
+        if (sticky) {
+            return action.process(getStickySession().prepareStatement(sql));
+        }
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            return action.process(ps);
+        }
+    }
+
+    private StickySession getStickySession() {
+        StickySession session = stickySession.get();
+        if (session == null) {
+            session = new StickySession(getDataSource());
+            stickySession.set(session);
+            stickySessions.add(session);
+        }
+        return session;
+    }
+
+    protected Schema getSchema() {
+        return schema;
+    }
+
+    protected RandomData.Entropy getEntropy() {
+        return entropy;
+    }
+
+    protected String getInsertSql() {
+        return insertSql;
+    }
+
+    protected String getTableName() {
+        return tableName;
+    }
+}
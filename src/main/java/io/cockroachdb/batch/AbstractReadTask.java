@@ -0,0 +1,234 @@
+package io.cockroachdb.batch;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.cockroachdb.batch.jdbc.DataAccessException;
+import io.cockroachdb.batch.jdbc.JdbcUtils;
+import io.cockroachdb.batch.schema.ColumnSpec;
+import io.cockroachdb.batch.schema.ColumnType;
+import io.cockroachdb.batch.schema.KeyReservoir;
+import io.cockroachdb.batch.schema.KeyStrategy;
+import io.cockroachdb.batch.util.Assert;
+import io.cockroachdb.batch.workload.Instrumented;
+import io.cockroachdb.batch.workload.RecoverableException;
+
+/**
+ * Base for read tasks looking up rows written by insert tasks to the same table
+ * while they run, by sampling keys from the table's shared key reservoir. Only
+ * client-generated keys are offered by writers, so server-generated keys (rowid)
+ * are rejected. Before writers have offered any keys, the reservoir is seeded
+ * from existing rows. Until there are keys to read, reads fail as recoverable
+ * and are retried with backoff.
+ * <p>
+ * Reads are implicit transactions, optionally as historical reads with
+ * {@code AS OF SYSTEM TIME} either at the follower read timestamp or at
+ * a fixed staleness.
+ *
+ * @author Kai Niemi
+ */
+public abstract class AbstractReadTask extends AbstractDatabaseTask implements Instrumented {
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final String TABLE_NAME = "t_test";
+
+    private static final String FOLLOWER_READ = "follower";
+
+    private static final Pattern STALENESS_PATTERN = Pattern.compile("^-\\d+(\\.\\d+)?(us|ms|s|m|h)$");
+
+    private static final long SEED_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private String tableName;
+
+    private KeyReservoir keyReservoir;
+
+    private int reservoirSize;
+
+    private String readMode;
+
+    private String asOfSystemTime;
+
+    private final AtomicLong lastSeedTime = new AtomicLong();
+
+    private final LongAdder reads = new LongAdder();
+
+    private final LongAdder rowsRead = new LongAdder();
+
+    @Override
+    public void prepareTask(Map<String, String> params) {
+        this.tableName = params.getOrDefault("tableName", TABLE_NAME);
+
+        String prefix = tableName.equals(TABLE_NAME) ? "" : tableName + ".";
+
+        KeyStrategy keyStrategy = KeyStrategy.parse(params.getOrDefault(prefix + "keyStrategy", "rowid"));
+        this.reservoirSize = Integer.parseInt(params.getOrDefault(prefix + "reservoirSize", "100000"));
+
+        Assert.isTrue(keyStrategy != KeyStrategy.ROWID,
+                "%s requires client-generated keys, set %s to sequential, uuid4, uuid7, hash-sharded or tenant"
+                        .formatted(getClass().getSimpleName(), prefix + "keyStrategy"));
+        Assert.isTrue(reservoirSize > 0, "reservoirSize must be > 0");
+
+        String staleness = params.getOrDefault(prefix + "asOfSystemTime", "");
+        if (staleness.isEmpty()) {
+            this.readMode = "strong";
+            this.asOfSystemTime = "";
+        } else if (staleness.equalsIgnoreCase(FOLLOWER_READ)) {
+            this.readMode = "follower";
+            this.asOfSystemTime = " as of system time follower_read_timestamp()";
+        } else {
+            Assert.isTrue(STALENESS_PATTERN.matcher(staleness).matches(),
+                    "asOfSystemTime must be 'follower' or a negative interval such as -10s");
+            this.readMode = "stale";
+            this.asOfSystemTime = " as of system time '%s'".formatted(staleness);
+        }
+
+        this.keyReservoir = KeyReservoir.forTable(tableName, keyStrategy, reservoirSize);
+
+        logger.debug("Task parameters for %s".formatted(getClass().getSimpleName()));
+        logger.debug("\ttableName: %s".formatted(tableName));
+        logger.debug("\t%s: %s".formatted(prefix + "keyStrategy", keyReservoir.getStrategy()));
+        logger.debug("\t%s: %s".formatted(prefix + "reservoirSize", reservoirSize));
+        logger.debug("\t%s: %s".formatted(prefix + "asOfSystemTime", readMode));
+
+        prepareParams(params, prefix);
+    }
+
+    /**
+     * Invoked during preparation to parse task specific parameters.
+     *
+     * @param params command-line parameters
+     * @param prefix the table name prefix for table specific parameters, or empty
+     */
+    protected void prepareParams(Map<String, String> params, String prefix) {
+    }
+
+    @Override
+    public int executeOne(int batchSize) {
+        if (keyReservoir.isEmpty() && !seed()) {
+            throw new RecoverableException("No keys written to %s yet".formatted(tableName));
+        }
+        int rows = executeRead(batchSize);
+        rowsRead.add(rows);
+        reads.increment();
+        return rows;
+    }
+
+    @Override
+    public Kind getKind() {
+        return Kind.READ;
+    }
+
+    /**
+     * Execute one read using keys sampled from the reservoir.
+     *
+     * @param batchSize the number of keys or max number of rows to read, always > 0
+     * @return the number of rows read
+     */
+    protected abstract int executeRead(int batchSize);
+
+    private boolean seed() {
+        long now = System.nanoTime();
+        long last = lastSeedTime.get();
+        if (last != 0 && now - last < SEED_INTERVAL_NANOS || !lastSeedTime.compareAndSet(last, now)) {
+            return !keyReservoir.isEmpty();
+        }
+
+        List<ColumnType> types = keyReservoir.getKeyColumns();
+        String sql = "select %s from %s limit %d".formatted(
+                String.join(",", getKeyColumnNames()), tableName, reservoirSize);
+        try {
+            JdbcUtils.queryForEntity(getDataSource(), sql, rs -> {
+                long[] key = new long[keyReservoir.getWidth()];
+                while (rs.next()) {
+                    int offset = 0;
+                    for (int col = 0; col < types.size(); col++) {
+                        if (types.get(col) == ColumnType.UUID) {
+                            UUID uuid = rs.getObject(col + 1, UUID.class);
+                            key[offset++] = uuid.getMostSignificantBits();
+                            key[offset++] = uuid.getLeastSignificantBits();
+                        } else {
+                            key[offset++] = rs.getLong(col + 1);
+                        }
+                    }
+                    keyReservoir.offer(key);
+                }
+                return null;
+            });
+            logger.debug("Seeded key reservoir of %s with %d keys".formatted(tableName, keyReservoir.size()));
+        } catch (DataAccessException e) {
+            logger.debug("Unable to seed key reservoir of %s: %s".formatted(tableName, e.getMessage()));
+        }
+        return !keyReservoir.isEmpty();
+    }
+
+    /**
+     * Bind a sampled key column value to a statement parameter.
+     *
+     * @param ps             the statement
+     * @param parameterIndex the parameter index
+     * @param keys           the sampled keys
+     * @param key            the key index
+     * @param col            the key column index
+     */
+    protected void bindKey(PreparedStatement ps, int parameterIndex, long[] keys, int key, int col)
+            throws SQLException {
+        List<ColumnType> types = keyReservoir.getKeyColumns();
+        int offset = key * keyReservoir.getWidth();
+        for (int c = 0; c < col; c++) {
+            offset += types.get(c) == ColumnType.UUID ? 2 : 1;
+        }
+        if (types.get(col) == ColumnType.UUID) {
+            ps.setObject(parameterIndex, new UUID(keys[offset], keys[offset + 1]));
+        } else {
+            ps.setLong(parameterIndex, keys[offset]);
+        }
+    }
+
+    @Override
+    public Map<String, Number> getGauges() {
+        Map<String, Number> gauges = new LinkedHashMap<>();
+        long n = reads.sum();
+        gauges.put("reservoir-keys", keyReservoir.size());
+        gauges.put("rows-per-read", n > 0 ? (double) rowsRead.sum() / n : 0.0);
+        return gauges;
+    }
+
+    @Override
+    public Map<String, String> getLabels() {
+        return Map.of("key_strategy", keyReservoir.getStrategy().getLabel(),
+                "read_mode", readMode);
+    }
+
+    /**
+     * @return the table reference including any AS OF SYSTEM TIME clause
+     */
+    protected String getFromClause() {
+        return tableName + asOfSystemTime;
+    }
+
+    protected List<String> getKeyColumnNames() {
+        return keyReservoir.getStrategy().getPrimaryKeyColumns()
+                .stream()
+                .map(ColumnSpec::getName)
+                .toList();
+    }
+
+    protected KeyReservoir getKeyReservoir() {
+        return keyReservoir;
+    }
+
+    protected String getTableName() {
+        return tableName;
+    }
+}
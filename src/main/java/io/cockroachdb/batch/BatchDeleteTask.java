@@ -0,0 +1,169 @@
+package io.cockroachdb.batch;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.cockroachdb.batch.jdbc.JdbcUtils;
+import io.cockroachdb.batch.schema.ColumnSpec;
+import io.cockroachdb.batch.schema.KeyStrategy;
+import io.cockroachdb.batch.workload.Instrumented;
+import io.cockroachdb.batch.workload.RecoverableException;
+
+/**
+ * Cleanup task deleting rows in primary key ordered chunks, for running
+ * alongside insert tasks writing to the same table, like a TTL job expiring
+ * old rows. Each chunk is one implicit {@code DELETE .. ORDER BY .. LIMIT}
+ * statement resuming after the last deleted key, which is kept in memory.
+ * Key order is insertion order for sequential and uuid7 keys only.
+ * <p>
+ * When a chunk comes back empty, the cursor starts over from the lowest key
+ * to pick up rows written behind it. There is a single cursor, so the task
+ * runs one call at a time regardless of the requested concurrency. Concurrent
+ * workers would either delete the same rows or wait on each other, and that
+ * wait would be recorded as delete latency.
+ * <p>
+ * Deleted rows per second are over the time the task ran. Writer latency
+ * while deleting is reported next to it, against the intervals without
+ * deletes, to show the impact of the cleanup on concurrent writes.
+ *
+ * @author Kai Niemi
+ */
+public class BatchDeleteTask extends AbstractDatabaseTask implements Instrumented {
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final String TABLE_NAME = "t_test";
+
+    private static final String DELETE_TEMPLATE = """
+            with deleted as (delete from %s%s order by %s limit ? returning %s)
+            select %s, count(*) over () from deleted order by %s limit 1
+            """;
+
+    private String tableName;
+
+    private KeyStrategy keyStrategy;
+
+    private String deleteFirstSql;
+
+    private String deleteNextSql;
+
+    private int keyCount;
+
+    // Last deleted key, or null to start from the lowest key
+    private volatile Object[] cursor;
+
+    private final LongAdder deletedRows = new LongAdder();
+
+    private final LongAdder wraps = new LongAdder();
+
+    private final AtomicLong startTime = new AtomicLong();
+
+    private final AtomicLong endTime = new AtomicLong();
+
+    @Override
+    public void prepareTask(Map<String, String> params) {
+        this.tableName = params.getOrDefault("tableName", TABLE_NAME);
+
+        String prefix = tableName.equals(TABLE_NAME) ? "" : tableName + ".";
+
+        this.keyStrategy = KeyStrategy.parse(params.getOrDefault(prefix + "keyStrategy", "rowid"));
+
+        List<String> cols = keyStrategy.getPrimaryKeyColumns()
+                .stream()
+                .map(ColumnSpec::getName)
+                .toList();
+
+        String keys = String.join(",", cols);
+        String descending = String.join(",", cols.stream().map(col -> col + " desc").toList());
+        String predicate = cols.size() == 1
+                ? " where %s > ?".formatted(keys)
+                : " where (%s) > (%s)".formatted(keys, String.join(",", Collections.nCopies(cols.size(), "?")));
+
+        this.keyCount = cols.size();
+        this.deleteFirstSql = DELETE_TEMPLATE.formatted(tableName, "", keys, keys, keys, descending);
+        this.deleteNextSql = DELETE_TEMPLATE.formatted(tableName, predicate, keys, keys, keys, descending);
+
+        logger.debug("Task parameters for %s".formatted(getClass().getSimpleName()));
+        logger.debug("\ttableName: %s".formatted(tableName));
+        logger.debug("\t%s: %s".formatted(prefix + "keyStrategy", keyStrategy));
+        logger.debug("\tdeleteSql: %s".formatted(deleteNextSql));
+    }
+
+    @Override
+    public int executeOne(int batchSize) {
+        startTime.compareAndSet(0, System.nanoTime());
+
+        int deleted = deleteChunk(batchSize);
+        if (deleted == 0 && cursor != null) {
+            cursor = null;
+            wraps.increment();
+            deleted = deleteChunk(batchSize);
+        }
+        if (deleted == 0) {
+            throw new RecoverableException("No rows to delete in %s".formatted(tableName));
+        }
+        deletedRows.add(deleted);
+        endTime.set(System.nanoTime());
+        return deleted;
+    }
+
+    private int deleteChunk(int batchSize) {
+        final Object[] from = cursor;
+
+        return JdbcUtils.queryForEntity(getDataSource(), from != null ? deleteNextSql : deleteFirstSql, ps -> {
+            int index = 1;
+            if (from != null) {
+                for (Object value : from) {
+                    ps.setObject(index++, value);
+                }
+            }
+            ps.setInt(index, batchSize);
+            return null;
+        }, rs -> {
+            if (!rs.next()) {
+                return 0;
+            }
+            Object[] last = new Object[keyCount];
+            for (int col = 0; col < keyCount; col++) {
+                last[col] = rs.getObject(col + 1);
+            }
+            this.cursor = last;
+            return rs.getInt(keyCount + 1);
+        });
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return 1;
+    }
+
+    @Override
+    public Kind getKind() {
+        return Kind.DELETE;
+    }
+
+    @Override
+    public Map<String, Number> getGauges() {
+        Map<String, Number> gauges = new LinkedHashMap<>();
+        long start = startTime.get();
+        long end = endTime.get();
+        long deleted = deletedRows.sum();
+        double seconds = end != 0 ? (end - start) / (double) TimeUnit.SECONDS.toNanos(1) : 0;
+        gauges.put("deleted-rows", deleted);
+        gauges.put("deleted-rows-per-sec", seconds > 0 ? deleted / seconds : 0.0);
+        gauges.put("cursor-wraps", wraps.sum());
+        return gauges;
+    }
+
+    @Override
+    public Map<String, String> getLabels() {
+        return Map.of("key_strategy", keyStrategy.getLabel());
+    }
+}
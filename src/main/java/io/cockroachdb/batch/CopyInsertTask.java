@@ -0,0 +1,109 @@
+package io.cockroachdb.batch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import io.cockroachdb.batch.jdbc.ConnectionCallback;
+import io.cockroachdb.batch.jdbc.CopyBuffer;
+import io.cockroachdb.batch.jdbc.DataAccessException;
+import io.cockroachdb.batch.schema.ColumnBatch;
+
+/**
+ * Insert task streaming generated rows through COPY FROM STDIN
+ * using the pgjdbc {@link CopyManager}, in either text or CSV format.
+ * Encoded row buffers are recycled between batches, while the generated
+ * columns are kept with each buffer until written to offer their keys.
+ *
+ * @author Kai Niemi
+ */
+public class CopyInsertTask extends AbstractInsertTask<CopyInsertTask.CopyBatch> {
+    record CopyBatch(CopyBuffer buffer, ColumnBatch columns) {
+    }
+
+    private static final String COPY_TEMPLATE = """
+            copy %s (%s) from stdin%s
+            """;
+
+    private final Queue<CopyBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+
+    private CopyBuffer.Format format;
+
+    private int flushSize;
+
+    @Override
+    protected void prepareParams(Map<String, String> params, String prefix) {
+        this.format = CopyBuffer.Format.parse(params.getOrDefault(prefix + "copyFormat", "text"));
+        this.flushSize = Integer.parseInt(params.getOrDefault(prefix + "copyFlushSize", "65536"));
+
+        logger.debug("\t%s: %s".formatted(prefix + "copyFormat", format));
+        logger.debug("\t%s: %s".formatted(prefix + "copyFlushSize", flushSize));
+    }
+
+    @Override
+    protected String createInsertSql(String tableName, List<String> cols) {
+        return COPY_TEMPLATE.formatted(
+                tableName,
+                String.join(",", cols),
+                format == CopyBuffer.Format.CSV ? " with csv" : "");
+    }
+
+    @Override
+    protected CopyBatch generateBatch(int batchSize) {
+        CopyBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            buffer = new CopyBuffer(format, flushSize);
+        }
+        buffer.reset();
+
+        ColumnBatch batch = generateColumns(batchSize);
+        for (int row = 0; row < batchSize; row++) {
+            for (int col = 0; col < batch.getNumCols(); col++) {
+                batch.encode(buffer, col, row);
+            }
+            buffer.endRow();
+        }
+
+        return new CopyBatch(buffer, batch);
+    }
+
+    @Override
+    protected ColumnBatch getColumns(CopyBatch batch) {
+        return batch.columns();
+    }
+
+    @Override
+    protected void executeBatch(CopyBatch batch) {
+        final CopyBuffer buffer = batch.buffer();
+
+        ConnectionCallback<Void> action = connection -> {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+
+            CopyIn copyIn = copyManager.copyIn(getInsertSql());
+            try {
+                buffer.writeTo(copyIn, flushSize);
+
+                long rows = copyIn.endCopy();
+                if (rows != buffer.getRowCount()) {
+                    throw new DataAccessException("Rows affected != " + buffer.getRowCount());
+                }
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            return null;
+        };
+
+        try {
+            execute(action);
+        } finally {
+            freeBuffers.offer(buffer);
+        }
+    }
+}
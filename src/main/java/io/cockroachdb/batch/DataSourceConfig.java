@@ -7,6 +7,8 @@ import javax.sql.DataSource;
 
 import com.zaxxer.hikari.HikariDataSource;
 
+import io.cockroachdb.batch.jdbc.PoolMetrics;
+
 import net.ttddyy.dsproxy.listener.logging.DefaultQueryLogEntryCreator;
 import net.ttddyy.dsproxy.listener.logging.SLF4JLogLevel;
 import net.ttddyy.dsproxy.listener.logging.SLF4JQueryLoggingListener;
@@ -18,6 +20,8 @@ import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
 public class DataSourceConfig {
     public static final String SQL_TRACE_LOGGER = "io.cockroachdb.batch.SQL_TRACE";
 
+    private final PoolMetrics poolMetrics = new PoolMetrics();
+
     public DataSource createDataSource(Map<String, String> params) {
         String url = params.getOrDefault("url",
                 "jdbc:postgresql://localhost:26257/defaultdb?sslmode=disable");
@@ -43,10 +47,15 @@ public class DataSourceConfig {
         dataSource.setTransactionIsolation(isolationLevel);
         dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
         dataSource.addDataSourceProperty("application_name", "batch-demo");
+        dataSource.setMetricsTrackerFactory(poolMetrics);
 
         return traceSQL ? loggingProxy(dataSource) : dataSource;
     }
 
+    public PoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+
     private DataSource loggingProxy(DataSource dataSource) {
         DefaultQueryLogEntryCreator creator = new DefaultQueryLogEntryCreator();
         creator.setMultiline(false);
@@ -30,7 +30,7 @@ public class FakeTask implements Task {
     }
 
     @Override
-    public void executeOne(int batchSize) {
+    public int executeOne(int batchSize) {
         ThreadLocalRandom r = ThreadLocalRandom.current();
         if (r.nextDouble(0, 1.0) < transientErrorProbability) {
             throw new RecoverableException("Fake recoverable exception for #" + num);
@@ -44,6 +44,7 @@ public class FakeTask implements Task {
                 Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
             }
+            return batchSize;
         }
     }
 }
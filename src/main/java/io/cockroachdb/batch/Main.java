@@ -1,5 +1,8 @@
 package io.cockroachdb.batch;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
@@ -11,7 +14,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 import javax.sql.DataSource;
@@ -21,17 +24,33 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.util.concurrent.RateLimiter;
 
+import io.cockroachdb.batch.cluster.Agent;
+import io.cockroachdb.batch.cluster.Coordinator;
+import io.cockroachdb.batch.jdbc.PoolMetrics;
 import io.cockroachdb.batch.util.DurationUtils;
 import io.cockroachdb.batch.util.Multiplier;
+import io.cockroachdb.batch.workload.AdaptiveBatchSizeController;
+import io.cockroachdb.batch.workload.ArrivalSchedule;
+import io.cockroachdb.batch.workload.BatchSizeController;
+import io.cockroachdb.batch.workload.MetricsEndpoint;
+import io.cockroachdb.batch.workload.MetricsFileWriter;
 import io.cockroachdb.batch.workload.MetricsPrinter;
+import io.cockroachdb.batch.workload.RetryBudget;
+import io.cockroachdb.batch.workload.RetryPolicy;
 import io.cockroachdb.batch.workload.WorkloadManager;
 
 public class Main {
     // Add all tasks here with unique IDs / aliases
-    private static final Map<String, Task> AVAILABLE_TASKS = Map.of(
-            "fake", new FakeTask(),
-            "array-insert", new ArrayInsertTask(),
-            "batch-insert", new BatchInsertTask()
+    private static final Map<String, Supplier<Task>> AVAILABLE_TASKS = Map.of(
+            "fake", FakeTask::new,
+            "array-insert", ArrayInsertTask::new,
+            "batch-insert", BatchInsertTask::new,
+            "copy-insert", CopyInsertTask::new,
+            "values-insert", ValuesInsertTask::new,
+            "point-read", PointReadTask::new,
+            "range-scan", RangeScanTask::new,
+            "upsert", UpsertTask::new,
+            "batch-delete", BatchDeleteTask::new
     );
 
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
@@ -40,89 +59,193 @@ public class Main {
 
     private final Map<String, String> params;
 
-    private Map<String, Task> matchingTasks = Map.of();
+    private Scenario scenario;
+
+    private PoolMetrics poolMetrics;
+
+    private Agent agent;
 
     public Main(ExecutorService executorService, Map<String, String> params) {
         this.workloadManager = new WorkloadManager(executorService);
         this.params = params;
     }
 
-    public void prepare(Set<String> taskNames) {
-        // Filter tasks
-        matchingTasks = AVAILABLE_TASKS.entrySet()
-                .stream().filter(e -> taskNames.contains(e.getKey()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-        if (matchingTasks.isEmpty()) {
-            throw new IllegalStateException("No tasks matching names: " + String.join(",", taskNames));
-        }
+    public void prepare(Scenario scenario) {
+        this.scenario = scenario;
 
         // Initialize tasks
-        if (matchingTasks.values().stream()
-                .anyMatch(task -> task instanceof DataSourceAware)) {
-            DataSource dataSource = new DataSourceConfig().createDataSource(params);
-
-            matchingTasks.forEach((id, task) -> {
-                if (task instanceof DataSourceAware) {
-                    ((DataSourceAware) task).setDataSource(dataSource);
+        if (scenario.getInstances().stream()
+                .anyMatch(instance -> instance.task() instanceof DataSourceAware)) {
+            DataSourceConfig dataSourceConfig = new DataSourceConfig();
+            DataSource dataSource = dataSourceConfig.createDataSource(params);
+            poolMetrics = dataSourceConfig.getPoolMetrics();
+
+            scenario.getInstances().forEach(instance -> {
+                if (instance.task() instanceof DataSourceAware) {
+                    ((DataSourceAware) instance.task()).setDataSource(dataSource);
                 }
-                if (task instanceof ExecutorAware) {
-                    ((ExecutorAware) task).setExecutorService(workloadManager.getExecutorService());
+                if (instance.task() instanceof ExecutorAware) {
+                    ((ExecutorAware) instance.task()).setExecutorService(workloadManager.getExecutorService());
                 }
             });
         }
 
-        // Prepare tasks
-        matchingTasks.forEach((id, task) -> task.prepareTask(params));
+        // Prepare tasks, each instance with its own parameters
+        scenario.getInstances().forEach(instance -> instance.task().prepareTask(instance.params()));
+    }
+
+    /**
+     * Take part in a coordinated run, starting together with the other agents
+     * and streaming metrics to the coordinator.
+     */
+    public void setAgent(Agent agent) {
+        this.agent = agent;
     }
 
     public void run() {
-        final int batchSize = Integer.parseInt(params.getOrDefault("batch-size", "64"));
+        if (agent != null) {
+            agent.awaitStart();
+        }
 
         final Duration runtimeDuration = DurationUtils.parseDuration(params.getOrDefault("duration", "60s"));
-        final int concurrency = Integer.parseInt(params.getOrDefault("concurrency", "1"));
 
         final Duration warmupDuration = DurationUtils.parseDuration(params.getOrDefault("warmup", "0s"));
         final int permits = Multiplier.parseInt(params.getOrDefault("permits", "5k"));
 
+        final RetryPolicy.Strategy retryStrategy
+                = RetryPolicy.Strategy.parse(params.getOrDefault("retry-policy", "full"));
+        final long retryBase = Long.parseLong(params.getOrDefault("retry-base", "20"));
+        final long retryCap = Long.parseLong(params.getOrDefault("retry-cap", "5000"));
+        final int retryBudget = Multiplier.parseInt(params.getOrDefault("retry-budget", "0"));
+
+        workloadManager.setRetryPolicy(RetryPolicy.of(retryStrategy, retryBase, retryCap));
+        // Allow a burst of one second worth of retries
+        workloadManager.setRetryBudget(retryBudget > 0
+                ? new RetryBudget(retryBudget, retryBudget)
+                : RetryBudget.unlimited());
+
         final Instant stopTime = Instant.now().plus(runtimeDuration);
         final Instant warmupTime = Instant.now().plus(warmupDuration);
 
         final RateLimiter rateLimiter = RateLimiter.create(permits, warmupDuration);
 
         final MetricsPrinter metricsPrinter = new MetricsPrinter(workloadManager);
+        metricsPrinter.setPoolMetrics(poolMetrics);
 
         if (!Boolean.parseBoolean(params.getOrDefault("disable-metrics", "false"))) {
             metricsPrinter.scheduleWithPeriod(5, TimeUnit.SECONDS);
         }
 
-        logger.info("Scheduling %d tasks to run for %s with concurrency level %d and warmup period of %s - let it rip!"
-                .formatted(matchingTasks.size(), runtimeDuration, concurrency, warmupDuration));
+        MetricsFileWriter metricsFileWriter = null;
+        if (params.containsKey("metrics-file")) {
+            String metricsFile = params.get("metrics-file");
+            MetricsFileWriter.Format format = params.containsKey("metrics-format")
+                    ? MetricsFileWriter.Format.parse(params.get("metrics-format"))
+                    : MetricsFileWriter.Format.fromFileName(metricsFile);
+            Duration interval = DurationUtils.parseDuration(params.getOrDefault("metrics-interval", "5s"));
+
+            metricsFileWriter = new MetricsFileWriter(workloadManager, Paths.get(metricsFile), format);
+            metricsFileWriter.scheduleWithPeriod(interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        MetricsEndpoint metricsEndpoint = null;
+        if (params.containsKey("metrics-port")) {
+            metricsEndpoint = new MetricsEndpoint(workloadManager, Integer.parseInt(params.get("metrics-port")));
+            metricsEndpoint.setPoolMetrics(poolMetrics);
+            metricsEndpoint.setLabels(scenario.getLabels());
+        }
+
+        logger.info("Scheduling %d tasks to run for %s with warmup period of %s - let it rip!"
+                .formatted(scenario.getInstances().size(), runtimeDuration, warmupDuration));
 
         // Schedule tasks
-        matchingTasks.forEach((id, task) -> IntStream.rangeClosed(1, concurrency)
-                .forEach(value -> {
-                    final String title = id + " #" + value;
-
-                    logger.info("Scheduling '%s' to run for %s with warmup %s"
-                            .formatted(title, runtimeDuration, warmupDuration));
-
-                    workloadManager.submitWorkload(task,
-                            batchSize,
-                            x -> {
-                                if (Instant.now().isBefore(warmupTime)) {
-                                    rateLimiter.acquire();
-                                }
-                                return Instant.now().isBefore(stopTime);
-                            },
-                            title);
-                }));
+        scenario.getInstances().forEach(instance -> {
+            final Map<String, String> instanceParams = instance.params();
+
+            final int batchSize = Integer.parseInt(instanceParams.getOrDefault("batch-size", "64"));
+            final boolean adaptiveBatch = Boolean.parseBoolean(instanceParams.getOrDefault("adaptive-batch", "false"));
+            final int minBatchSize = Integer.parseInt(instanceParams.getOrDefault("batch-size-min", "1"));
+            final int maxBatchSize = Integer.parseInt(instanceParams.getOrDefault("batch-size-max", "4096"));
+            final long p99Limit = Long.parseLong(instanceParams.getOrDefault("p99-limit", "0"));
+
+            final int requestedConcurrency = Integer.parseInt(instanceParams.getOrDefault("concurrency", "1"));
+            final int requestedInFlight = Integer.parseInt(instanceParams.getOrDefault("in-flight", "1"));
+
+            // Tasks keeping shared state between calls may limit concurrent calls
+            final int maxConcurrency = instance.task().getMaxConcurrency();
+            final int concurrency = Math.min(requestedConcurrency, maxConcurrency);
+            final int inFlight = Math.max(1, Math.min(requestedInFlight, maxConcurrency / concurrency));
+
+            if (concurrency < requestedConcurrency || inFlight < requestedInFlight) {
+                logger.warn("Task '%s' supports at most %d concurrent calls - running %d workers with %d in flight"
+                        .formatted(instance.name(), maxConcurrency, concurrency, inFlight));
+            }
+
+            final int arrivalRate = Multiplier.parseInt(instanceParams.getOrDefault("rate", "0"));
+            final int rowRate = Multiplier.parseInt(instanceParams.getOrDefault("row-rate", "0"));
+            final ArrivalSchedule.Distribution arrivalDistribution
+                    = ArrivalSchedule.Distribution.parse(instanceParams.getOrDefault("arrival", "constant"));
+
+            logger.info("Scheduling '%s' (%s) with concurrency level %d and batch size %d"
+                    .formatted(instance.name(), instance.taskName(), concurrency, batchSize));
+
+            if (rowRate > 0) {
+                workloadManager.setThroughputTarget(instance.task(), rowRate);
+            }
+
+            IntStream.rangeClosed(1, concurrency).forEach(value -> {
+                final String title = instance.name() + " #" + value;
+
+                // Open-loop arrival rate is per task, divided evenly across its workers
+                final ArrivalSchedule schedule = arrivalRate > 0
+                        ? ArrivalSchedule.openLoop(arrivalDistribution, (double) arrivalRate / concurrency)
+                        : ArrivalSchedule.closedLoop();
+
+                // Adaptive batch size is tuned individually per worker
+                final BatchSizeController batchSizeController = adaptiveBatch
+                        ? new AdaptiveBatchSizeController(batchSize, minBatchSize, maxBatchSize, p99Limit, 5)
+                        : BatchSizeController.fixed(batchSize);
+
+                logger.info("Scheduling '%s' to run for %s with warmup %s"
+                        .formatted(title, runtimeDuration, warmupDuration));
+
+                workloadManager.submitWorkload(instance.task(),
+                        batchSizeController,
+                        x -> {
+                            if (!schedule.isOpenLoop() && Instant.now().isBefore(warmupTime)) {
+                                rateLimiter.acquire();
+                            }
+                            return Instant.now().isBefore(stopTime);
+                        },
+                        instance.name(),
+                        title,
+                        schedule,
+                        inFlight);
+            });
+        });
 
         logger.info("All tasks scheduled - pending completion");
 
+        if (agent != null) {
+            agent.scheduleWithPeriod(workloadManager, 1, TimeUnit.SECONDS);
+        }
+
         workloadManager.shutdownAndWait();
 
-        metricsPrinter.printSummary(batchSize);
+        if (agent != null) {
+            agent.finish();
+            agent.close();
+        }
+
+        if (metricsFileWriter != null) {
+            metricsFileWriter.close();
+        }
+
+        metricsPrinter.printSummary();
+
+        if (metricsEndpoint != null) {
+            metricsEndpoint.close();
+        }
 
         logger.info("All done ¯\\_(ツ)_/¯");
     }
@@ -134,6 +257,7 @@ public class Main {
         }
 
         System.out.println("Usage: java -jar batch-demo.jar [options] <task, ...>");
+        System.out.println("       java -jar batch-demo.jar [options] --scenario <file>");
 
         System.out.println();
         System.out.println("Database options include:");
@@ -147,20 +271,50 @@ public class Main {
         System.out.println("Concurrency options include:");
         System.out.println("--pool-size <size>            Max connection pool size (500)");
         System.out.println("--concurrency <level>         Number of threads per task (1)");
+        System.out.println("--in-flight <depth>           Max batches in flight per worker, pipelined across "
+                           + "virtual thread lanes if > 1 (1)");
         System.out.println("--concurrency-limit <level>   Enables fixed-sized platform threads if non-zero. "
                            + "Default is unbounded virtual threads (-1)");
 
         System.out.println();
         System.out.println("Workload options include:");
-        System.out.println("--batch-size <number>         Task batch size (64)");
+        System.out.println("--batch-size <number>         Task batch size, initial size if adaptive (64)");
+        System.out.println("--adaptive-batch              Tune batch size per worker at runtime for max rows/sec");
+        System.out.println("--batch-size-min <number>     Adaptive batch size lower bound (1)");
+        System.out.println("--batch-size-max <number>     Adaptive batch size upper bound (4096)");
+        System.out.println("--p99-limit <ms>              Adaptive batch size p99 batch latency limit, zero for none (0)");
         System.out.println("--duration <time>             Execution duration (60s)");
         System.out.println("--warmup <time>               Warmup duration (0s)");
         System.out.println("--permits <number>            Peak requests/sec at end of warmup (5k)");
+        System.out.println("--rate <number>               Open-loop mode with fixed arrival rate in batches/sec per task. "
+                           + "Default is closed-loop (0)");
+        System.out.println("--row-rate <number>           Target throughput in rows/sec per task across its workers. "
+                           + "Default is unthrottled (0)");
+        System.out.println("--arrival <distribution>      Open-loop arrival distribution: constant or poisson (constant)");
+        System.out.println("--retry-policy <policy>       Backoff after transient errors: full, decorrelated, "
+                           + "exponential or none (full)");
+        System.out.println("--retry-base <ms>             Retry backoff base delay (20)");
+        System.out.println("--retry-cap <ms>              Retry backoff max delay (5000)");
+        System.out.println("--retry-budget <number>       Max retries/sec across all workloads, zero for unlimited (0)");
 
         System.out.println();
         System.out.println("Task options include:");
         System.out.println("--disable-metrics             Disable task performance metrics");
+        System.out.println("--metrics-file <path>         Append time-series metrics per workload and interval to a file");
+        System.out.println("--metrics-format <format>     Metrics file format: csv or ndjson (by file extension, else csv)");
+        System.out.println("--metrics-interval <time>     Metrics file sampling interval (5s)");
+        System.out.println("--metrics-port <port>         Serve Prometheus/OpenMetrics metrics on http://<host>:<port>/metrics");
         System.out.println("--param <k=v>                 Custom task parameter tuple (see tasks for specific params)");
+        System.out.println("--scenario <file>             Run a mix of task instances with their own options "
+                           + "and params from a scenario file");
+        System.out.println();
+        System.out.println("Coordination options include:");
+        System.out.println("--coordinator <port>          Coordinate a run across agent processes and print merged "
+                           + "metrics, without running tasks");
+        System.out.println("--agents <number>             Number of agents the coordinator waits for before "
+                           + "starting (1)");
+        System.out.println("--agent <host:port>           Run tasks as an agent of a coordinator, "
+                           + "starting together with the other agents");
 
         System.exit(1);
     }
@@ -169,6 +323,7 @@ public class Main {
         Set<String> tasks = new HashSet<>();
         Map<String, String> params = new HashMap<>();
         int concurrencyLimit = 0;
+        String scenarioFile = null;
 
         LinkedList<String> argsList = new LinkedList<>(Arrays.asList(args));
 
@@ -206,18 +361,86 @@ public class Main {
                 } else {
                     params.put("batch-size", argsList.pop());
                 }
+            } else if (arg.equals("--adaptive-batch")) {
+                params.put("adaptive-batch", "true");
+            } else if (arg.equals("--batch-size-min")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("batch-size-min", argsList.pop());
+                }
+            } else if (arg.equals("--batch-size-max")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("batch-size-max", argsList.pop());
+                }
+            } else if (arg.equals("--p99-limit")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("p99-limit", argsList.pop());
+                }
             } else if (arg.equals("--concurrency")) {
                 if (argsList.isEmpty()) {
                     printUsageAndQuit("Expected value after: " + arg);
                 } else {
                     params.put("concurrency", argsList.pop());
                 }
+            } else if (arg.equals("--in-flight")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("in-flight", argsList.pop());
+                }
             } else if (arg.equals("--duration")) {
                 if (argsList.isEmpty()) {
                     printUsageAndQuit("Expected duration after: " + arg);
                 } else {
                     params.put("duration", argsList.pop());
                 }
+            } else if (arg.equals("--rate")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("rate", argsList.pop());
+                }
+            } else if (arg.equals("--row-rate")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("row-rate", argsList.pop());
+                }
+            } else if (arg.equals("--arrival")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected distribution after: " + arg);
+                } else {
+                    params.put("arrival", argsList.pop());
+                }
+            } else if (arg.equals("--retry-policy")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected policy after: " + arg);
+                } else {
+                    params.put("retry-policy", argsList.pop());
+                }
+            } else if (arg.equals("--retry-base")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("retry-base", argsList.pop());
+                }
+            } else if (arg.equals("--retry-cap")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("retry-cap", argsList.pop());
+                }
+            } else if (arg.equals("--retry-budget")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("retry-budget", argsList.pop());
+                }
             } else if (arg.equals("--param")) {
                 if (argsList.isEmpty()) {
                     printUsageAndQuit("Expected k/v tuple after: " + arg);
@@ -225,6 +448,54 @@ public class Main {
                     String[] t = argsList.pop().split("=");
                     params.put(t[0], t[1]);
                 }
+            } else if (arg.equals("--scenario")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected path after: " + arg);
+                } else {
+                    scenarioFile = argsList.pop();
+                }
+            } else if (arg.equals("--coordinator")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected port after: " + arg);
+                } else {
+                    params.put("coordinator", argsList.pop());
+                }
+            } else if (arg.equals("--agents")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected value after: " + arg);
+                } else {
+                    params.put("agents", argsList.pop());
+                }
+            } else if (arg.equals("--agent")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected host:port after: " + arg);
+                } else {
+                    params.put("agent", argsList.pop());
+                }
+            } else if (arg.equals("--metrics-file")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected path after: " + arg);
+                } else {
+                    params.put("metrics-file", argsList.pop());
+                }
+            } else if (arg.equals("--metrics-format")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected format after: " + arg);
+                } else {
+                    params.put("metrics-format", argsList.pop());
+                }
+            } else if (arg.equals("--metrics-interval")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected duration after: " + arg);
+                } else {
+                    params.put("metrics-interval", argsList.pop());
+                }
+            } else if (arg.equals("--metrics-port")) {
+                if (argsList.isEmpty()) {
+                    printUsageAndQuit("Expected port after: " + arg);
+                } else {
+                    params.put("metrics-port", argsList.pop());
+                }
             } else if (arg.equals("--disable-metrics")) {
                 params.put("disableMetrics", "true");
             } else if (arg.equals("--concurrency-limit")) {
@@ -242,27 +513,58 @@ public class Main {
             }
         }
 
-        if (tasks.isEmpty()) {
-            printUsageAndQuit("No task name specified. Available tasks: "
+        if (params.containsKey("coordinator")) {
+            if (!tasks.isEmpty() || scenarioFile != null) {
+                printUsageAndQuit("The coordinator doesn't run tasks, give them to the agents");
+            }
+            Coordinator coordinator = new Coordinator(Integer.parseInt(params.get("coordinator")),
+                    Integer.parseInt(params.getOrDefault("agents", "1")));
+            try {
+                coordinator.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
+        if (tasks.isEmpty() && scenarioFile == null) {
+            printUsageAndQuit("No task name or scenario specified. Available tasks: "
                               + String.join(", ", AVAILABLE_TASKS.keySet()));
         }
 
+        if (!tasks.isEmpty() && scenarioFile != null) {
+            printUsageAndQuit("Expected either task names or a scenario, not both");
+        }
+
+        Scenario scenario = null;
+        try {
+            scenario = scenarioFile != null
+                    ? Scenario.load(Paths.get(scenarioFile), AVAILABLE_TASKS, params)
+                    : Scenario.ofTaskNames(tasks, AVAILABLE_TASKS, params);
+        } catch (IllegalArgumentException e) {
+            printUsageAndQuit(e.getMessage());
+        }
+
         if (concurrencyLimit > 0) {
             logger.info("Using bounded platform threads with pool size: {}", concurrencyLimit);
         } else {
             logger.info("Using unbounded virtual threads");
         }
 
-        if (!params.isEmpty()) {
+        if (!scenario.getParams().isEmpty()) {
             logger.info("Task parameters:");
-            params.forEach((k, v) -> logger.info("\t%s = %s".formatted(k, v)));
+            scenario.getParams().forEach((k, v) -> logger.info("\t%s = %s".formatted(k, v)));
         }
 
         try (ExecutorService executorService = concurrencyLimit > 0
                 ? Executors.newFixedThreadPool(concurrencyLimit)
                 : Executors.newVirtualThreadPerTaskExecutor()) {
-            Main main = new Main(executorService, params);
-            main.prepare(tasks);
+            Main main = new Main(executorService, scenario.getParams());
+            main.prepare(scenario);
+            // Join once prepared, so that schema setup is not part of the synchronized start
+            if (params.containsKey("agent")) {
+                main.setAgent(Agent.connect(params.get("agent")));
+            }
             main.run();
         }
     }
@@ -0,0 +1,109 @@
+package io.cockroachdb.batch;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.postgresql.PGConnection;
+
+import io.cockroachdb.batch.jdbc.JdbcUtils;
+import io.cockroachdb.batch.schema.ColumnType;
+
+/**
+ * Read task looking up a batch of rows by primary key in one statement,
+ * using {@code WHERE id = ANY(?)} with an array of sampled keys, or a join
+ * against unnested key arrays for composite keys.
+ *
+ * @author Kai Niemi
+ */
+public class PointReadTask extends AbstractReadTask {
+    private static final String SELECT_TEMPLATE = """
+            select * from %s where %s = any(?)
+            """;
+
+    private static final String SELECT_COMPOSITE_TEMPLATE = """
+            select * from %s where (%s) in (select %s)
+            """;
+
+    private final LongAdder keysRequested = new LongAdder();
+
+    private final LongAdder rowsFound = new LongAdder();
+
+    private String selectSql;
+
+    @Override
+    protected void prepareParams(Map<String, String> params, String prefix) {
+        List<String> cols = getKeyColumnNames();
+
+        this.selectSql = cols.size() == 1
+                ? SELECT_TEMPLATE.formatted(getFromClause(), cols.get(0))
+                : SELECT_COMPOSITE_TEMPLATE.formatted(getFromClause(), String.join(",", cols),
+                String.join(",", Collections.nCopies(cols.size(), "unnest(?::int8[])")));
+
+        logger.debug("\tselectSql: %s".formatted(selectSql));
+    }
+
+    @Override
+    protected int executeRead(int batchSize) {
+        final List<ColumnType> types = getKeyReservoir().getKeyColumns();
+        final int width = getKeyReservoir().getWidth();
+        final long[] keys = new long[batchSize * width];
+
+        if (!getKeyReservoir().sample(keys, batchSize)) {
+            return 0;
+        }
+
+        int rows = JdbcUtils.queryForEntity(getDataSource(), selectSql, ps -> {
+            int offset = 0;
+            for (int col = 0; col < types.size(); col++) {
+                ps.setArray(col + 1, toArray(ps.getConnection(), types.get(col), keys, width, offset, batchSize));
+                offset += types.get(col) == ColumnType.UUID ? 2 : 1;
+            }
+            return null;
+        }, rs -> {
+            int n = 0;
+            while (rs.next()) {
+                n++;
+            }
+            return n;
+        });
+
+        keysRequested.add(batchSize);
+        rowsFound.add(rows);
+
+        return rows;
+    }
+
+    private static Array toArray(Connection connection, ColumnType type,
+                                 long[] keys, int width, int offset, int count) throws SQLException {
+        if (type == ColumnType.UUID) {
+            UUID[] values = new UUID[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = new UUID(keys[i * width + offset], keys[i * width + offset + 1]);
+            }
+            return connection.createArrayOf(type.getArrayType(), values);
+        }
+        long[] values = width == 1 ? Arrays.copyOf(keys, count) : new long[count];
+        if (width > 1) {
+            for (int i = 0; i < count; i++) {
+                values[i] = keys[i * width + offset];
+            }
+        }
+        return connection.unwrap(PGConnection.class).createArrayOf(type.getArrayType(), values);
+    }
+
+    @Override
+    public Map<String, Number> getGauges() {
+        Map<String, Number> gauges = super.getGauges();
+        long requested = keysRequested.sum();
+        // Keys are sampled with replacement, so duplicates in a batch lower the ratio slightly
+        gauges.put("hit-ratio", requested > 0 ? (double) rowsFound.sum() / requested : 0.0);
+        return gauges;
+    }
+}
@@ -0,0 +1,60 @@
+package io.cockroachdb.batch;
+
+import java.util.List;
+import java.util.Map;
+
+import io.cockroachdb.batch.jdbc.JdbcUtils;
+
+/**
+ * Read task scanning a bounded range of rows in primary key order, starting
+ * from a sampled key and limited to the batch size. For composite keys the
+ * scan stays within the sampled key's prefix, such as a single tenant.
+ *
+ * @author Kai Niemi
+ */
+public class RangeScanTask extends AbstractReadTask {
+    private static final String SCAN_TEMPLATE = """
+            select * from %s where %s%s >= ? order by %s limit ?
+            """;
+
+    private String scanSql;
+
+    private int keyCount;
+
+    @Override
+    protected void prepareParams(Map<String, String> params, String prefix) {
+        List<String> cols = getKeyColumnNames();
+        String last = cols.get(cols.size() - 1);
+
+        StringBuilder prefixPredicate = new StringBuilder();
+        cols.subList(0, cols.size() - 1).forEach(col -> prefixPredicate.append(col).append(" = ? and "));
+
+        this.keyCount = cols.size();
+        this.scanSql = SCAN_TEMPLATE.formatted(getFromClause(), prefixPredicate, last, String.join(",", cols));
+
+        logger.debug("\tscanSql: %s".formatted(scanSql));
+    }
+
+    @Override
+    protected int executeRead(int batchSize) {
+        final long[] key = new long[getKeyReservoir().getWidth()];
+
+        if (!getKeyReservoir().sample(key, 1)) {
+            return 0;
+        }
+
+        return JdbcUtils.queryForEntity(getDataSource(), scanSql, ps -> {
+            for (int col = 0; col < keyCount; col++) {
+                bindKey(ps, col + 1, key, 0, col);
+            }
+            ps.setInt(keyCount + 1, batchSize);
+            return null;
+        }, rs -> {
+            int n = 0;
+            while (rs.next()) {
+                n++;
+            }
+            return n;
+        });
+    }
+}
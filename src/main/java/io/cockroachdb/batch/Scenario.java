@@ -0,0 +1,227 @@
+package io.cockroachdb.batch;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import io.cockroachdb.batch.workload.Instrumented;
+
+/**
+ * A workload mix of task instances run concurrently, each with its own
+ * parameters and metric labels, either given by task names on the command
+ * line or loaded from a scenario file in properties format:
+ * <pre>
+ * # Defaults for all instances, overridden by command line options
+ * concurrency=20
+ * batch-size=64
+ *
+ * orders.task=array-insert
+ * orders.weight=70
+ * orders.batch-size=256
+ * orders.tableName=orders
+ * orders.numCols=5
+ * orders.label.team=payments
+ *
+ * events.task=batch-insert
+ * events.weight=30
+ * events.tableName=events
+ * events.rate=100
+ * </pre>
+ * Keys prefixed by an instance name apply to that instance only, and may be
+ * any command line option (without dashes) or task parameter. Task parameters
+ * apply to the instance's table without the table name prefix. Instances with
+ * a weight and no explicit concurrency share the total concurrency by weight.
+ * Labels are added to the instance's exported metrics.
+ *
+ * @author Kai Niemi
+ */
+public class Scenario {
+    public record Instance(String name, String taskName, Task task,
+                           Map<String, String> params, Map<String, String> labels) {
+    }
+
+    private static final String TABLE_NAME = "tableName";
+
+    private static final Pattern LABEL_NAME = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    /**
+     * Create a scenario with one instance per task name, all sharing the same parameters.
+     *
+     * @param taskNames      the task names
+     * @param availableTasks the available tasks by name
+     * @param params         the command line parameters
+     * @return the scenario
+     */
+    public static Scenario ofTaskNames(Collection<String> taskNames,
+                                       Map<String, Supplier<Task>> availableTasks,
+                                       Map<String, String> params) {
+        List<Instance> instances = new ArrayList<>();
+        taskNames.forEach(name -> instances.add(
+                new Instance(name, name, createTask(name, availableTasks), params, Map.of())));
+        return new Scenario(instances, params);
+    }
+
+    /**
+     * Load a scenario from a properties file.
+     *
+     * @param path           the scenario file
+     * @param availableTasks the available tasks by name
+     * @param params         the command line parameters, taking precedence over scenario defaults
+     * @return the scenario
+     */
+    public static Scenario load(Path path,
+                                Map<String, Supplier<Task>> availableTasks,
+                                Map<String, String> params) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read scenario file: " + path, e);
+        }
+
+        Map<String, String> entries = new TreeMap<>();
+        properties.stringPropertyNames().forEach(key -> entries.put(key, properties.getProperty(key).trim()));
+
+        // Instances are declared by their task key
+        Map<String, String> taskNames = new TreeMap<>();
+        entries.forEach((key, value) -> {
+            if (key.endsWith(".task")) {
+                taskNames.put(key.substring(0, key.length() - ".task".length()), value);
+            }
+        });
+
+        if (taskNames.isEmpty()) {
+            throw new IllegalArgumentException("No instances declared (<name>.task=<task>) in: " + path);
+        }
+
+        Map<String, String> defaults = new HashMap<>();
+        entries.forEach((key, value) -> {
+            int dot = key.indexOf('.');
+            if (dot < 0 || !taskNames.containsKey(key.substring(0, dot))) {
+                defaults.put(key, value);
+            }
+        });
+        defaults.putAll(params);
+
+        List<Instance> instances = new ArrayList<>();
+
+        Map<Instance, Double> weights = new LinkedHashMap<>();
+
+        taskNames.forEach((name, taskName) -> {
+            Map<String, String> own = new LinkedHashMap<>();
+            Map<String, String> labels = new LinkedHashMap<>();
+
+            String prefix = name + ".";
+            entries.forEach((key, value) -> {
+                if (!key.startsWith(prefix) || key.equals(prefix + "task")) {
+                    return;
+                }
+                String subKey = key.substring(prefix.length());
+                if (subKey.startsWith("label.")) {
+                    String label = subKey.substring("label.".length());
+                    if (!LABEL_NAME.matcher(label).matches() || label.equals("task")) {
+                        throw new IllegalArgumentException("Invalid label name: " + key);
+                    }
+                    labels.put(label, value);
+                } else {
+                    own.put(subKey, value);
+                }
+            });
+
+            Map<String, String> instanceParams = new HashMap<>(defaults);
+            instanceParams.putAll(own);
+
+            // Task params are looked up with the table name prefix for non-default tables
+            if (own.containsKey(TABLE_NAME)) {
+                String tablePrefix = own.get(TABLE_NAME) + ".";
+                own.forEach((key, value) -> instanceParams.put(tablePrefix + key, value));
+            }
+
+            Instance instance = new Instance(name, taskName, createTask(taskName, availableTasks),
+                    instanceParams, labels);
+            instances.add(instance);
+
+            if (own.containsKey("weight") && !own.containsKey("concurrency")) {
+                weights.put(instance, Double.parseDouble(own.get("weight")));
+            }
+        });
+
+        // Weighted instances share the total concurrency
+        distributeConcurrency(weights, Integer.parseInt(defaults.getOrDefault("concurrency", "1")));
+
+        return new Scenario(instances, defaults);
+    }
+
+    private static Task createTask(String taskName, Map<String, Supplier<Task>> availableTasks) {
+        Supplier<Task> supplier = availableTasks.get(taskName);
+        if (supplier == null) {
+            throw new IllegalArgumentException("No task matching name: %s. Available tasks: %s"
+                    .formatted(taskName, String.join(", ", availableTasks.keySet())));
+        }
+        return supplier.get();
+    }
+
+    private static void distributeConcurrency(Map<Instance, Double> weights, int totalConcurrency) {
+        double totalWeight = weights.values().stream().mapToDouble(Double::doubleValue).sum();
+
+        weights.forEach((instance, weight) -> {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight must be > 0 for instance: " + instance.name());
+            }
+            long concurrency = Math.max(1, Math.round(totalConcurrency * weight / totalWeight));
+            instance.params().put("concurrency", Long.toString(concurrency));
+        });
+    }
+
+    private final List<Instance> instances;
+
+    private final Map<String, String> params;
+
+    private Scenario(List<Instance> instances, Map<String, String> params) {
+        this.instances = List.copyOf(instances);
+        this.params = params;
+    }
+
+    /**
+     * @return the scenario wide parameters, including command line parameters
+     */
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    public List<Instance> getInstances() {
+        return instances;
+    }
+
+    /**
+     * @return metric labels by instance name, for instances with labels, including
+     * any labels of prepared tasks overridden by labels in the scenario
+     */
+    public Map<String, Map<String, String>> getLabels() {
+        Map<String, Map<String, String>> labels = new LinkedHashMap<>();
+        instances.forEach(instance -> {
+            Map<String, String> merged = new LinkedHashMap<>();
+            if (instance.task() instanceof Instrumented instrumented) {
+                merged.putAll(instrumented.getLabels());
+            }
+            merged.putAll(instance.labels());
+            if (!merged.isEmpty()) {
+                labels.put(instance.name(), merged);
+            }
+        });
+        return labels;
+    }
+}
@@ -9,6 +9,15 @@ import java.util.Map;
  */
 @FunctionalInterface
 public interface Task {
+    /**
+     * What a task does with the rows it processes, for reporting.
+     */
+    enum Kind {
+        WRITE,
+        READ,
+        DELETE
+    }
+
     /**
      * Invoked once prior to task execution providing an opportunity to initialize things.
      *
@@ -22,8 +31,24 @@ public interface Task {
      * Execute a single batch.
      *
      * @param batchSize the size of the batch, always > 0
+     * @return the number of rows written, read or deleted, which may be fewer than the batch size
+     */
+    int executeOne(int batchSize);
+
+    /**
+     * @return max number of calls the task supports concurrently, capping both the
+     * number of workers and the batches in flight per worker
+     */
+    default int getMaxConcurrency() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return what the task does with the rows it processes
      */
-    void executeOne(int batchSize);
+    default Kind getKind() {
+        return Kind.WRITE;
+    }
 
     /**
      * Invoked once post execution providing an opportunity to teardown any side effects of the task.
@@ -0,0 +1,120 @@
+package io.cockroachdb.batch;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.cockroachdb.batch.schema.KeyGenerator;
+import io.cockroachdb.batch.schema.KeyStrategy;
+import io.cockroachdb.batch.util.Assert;
+import io.cockroachdb.batch.util.KeyDistribution;
+import io.cockroachdb.batch.util.Multiplier;
+
+/**
+ * Contended write task upserting batches of rows over a fixed keyspace,
+ * either by {@code UPSERT} or {@code INSERT .. ON CONFLICT DO UPDATE}, with
+ * the same array binding as the array insert task. Keys are drawn from a
+ * uniform, Zipfian or hotspot distribution, where raising the skew or the
+ * share of hot keys increases the contention between concurrent batches.
+ * Contention surfaces as transaction retries and tail latency in the metrics.
+ * <p>
+ * Hot keys are scattered across the keyspace by default, so that contention
+ * is on rows rather than on the single range holding the lowest keys.
+ *
+ * @author Kai Niemi
+ */
+public class UpsertTask extends ArrayInsertTask {
+    private static final String UPSERT_TEMPLATE = """
+            upsert into %s (%s) select %s
+            """;
+
+    private static final String ON_CONFLICT_TEMPLATE = """
+            insert into %s (%s) select %s on conflict (%s) do update set %s
+            """;
+
+    private String upsertMode;
+
+    private String keyDistribution;
+
+    private double skew;
+
+    private long keyspace;
+
+    private KeyDistribution distribution;
+
+    @Override
+    protected KeyStrategy getDefaultKeyStrategy() {
+        return KeyStrategy.SEQUENTIAL;
+    }
+
+    @Override
+    protected void prepareParams(Map<String, String> params, String prefix) {
+        this.upsertMode = params.getOrDefault(prefix + "upsertMode", "upsert");
+        this.keyDistribution = params.getOrDefault(prefix + "keyDistribution", "zipfian");
+        this.keyspace = Multiplier.parseInt(params.getOrDefault(prefix + "keyspace", "100k"));
+        this.skew = Double.parseDouble(params.getOrDefault(prefix + "skew", "0.99"));
+
+        double hotKeys = Double.parseDouble(params.getOrDefault(prefix + "hotKeys", "0.01"));
+        double hotOps = Double.parseDouble(params.getOrDefault(prefix + "hotOps", "0.9"));
+        boolean scatter = Boolean.parseBoolean(params.getOrDefault(prefix + "scatter", "true"));
+
+        Assert.isTrue(upsertMode.equals("upsert") || upsertMode.equals("on-conflict"),
+                "upsertMode must be 'upsert' or 'on-conflict'");
+        Assert.isTrue(keyspace > 0, "keyspace must be > 0");
+
+        this.distribution = switch (keyDistribution) {
+            case "uniform" -> KeyDistribution.uniform(keyspace);
+            case "zipfian" -> KeyDistribution.zipfian(keyspace, skew);
+            case "hotspot" -> KeyDistribution.hotspot(keyspace, hotKeys, hotOps);
+            default -> throw new IllegalArgumentException("Unknown key distribution: " + keyDistribution);
+        };
+        if (scatter) {
+            this.distribution = KeyDistribution.scatter(distribution, keyspace);
+        }
+
+        logger.debug("\t%s: %s".formatted(prefix + "upsertMode", upsertMode));
+        logger.debug("\t%s: %s".formatted(prefix + "keyspace", keyspace));
+        logger.debug("\t%s: %s".formatted(prefix + "keyDistribution", keyDistribution));
+        if (keyDistribution.equals("zipfian")) {
+            logger.debug("\t%s: %s".formatted(prefix + "skew", skew));
+        } else if (keyDistribution.equals("hotspot")) {
+            logger.debug("\t%s: %s".formatted(prefix + "hotKeys", hotKeys));
+            logger.debug("\t%s: %s".formatted(prefix + "hotOps", hotOps));
+        }
+        logger.debug("\t%s: %s".formatted(prefix + "scatter", scatter));
+    }
+
+    @Override
+    protected KeyGenerator createKeyGenerator(KeyStrategy strategy, int tenants) {
+        return new KeyGenerator(strategy, distribution, keyspace);
+    }
+
+    @Override
+    protected String createInsertSql(String tableName, List<String> cols) {
+        String values = String.join(",", cols.stream().map(col -> "unnest(?) as " + col).toList());
+
+        if (upsertMode.equals("upsert")) {
+            return UPSERT_TEMPLATE.formatted(tableName, String.join(",", cols), values);
+        }
+
+        // The key column is first
+        List<String> updates = cols.subList(1, cols.size())
+                .stream()
+                .map(col -> col + " = excluded." + col)
+                .toList();
+
+        return ON_CONFLICT_TEMPLATE.formatted(tableName, String.join(",", cols), values,
+                cols.get(0), String.join(",", updates));
+    }
+
+    @Override
+    public Map<String, String> getLabels() {
+        Map<String, String> labels = new LinkedHashMap<>(super.getLabels());
+        labels.put("upsert_mode", upsertMode);
+        labels.put("key_distribution", keyDistribution);
+        if (keyDistribution.equals("zipfian")) {
+            labels.put("skew", Double.toString(skew));
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,109 @@
+package io.cockroachdb.batch;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.cockroachdb.batch.jdbc.ConnectionCallback;
+import io.cockroachdb.batch.jdbc.DataAccessException;
+import io.cockroachdb.batch.schema.ColumnBatch;
+import io.cockroachdb.batch.util.PhaseTimer;
+
+/**
+ * Insert task using one explicit multi-row VALUES statement per batch
+ * rather than relying on the driver to rewrite JDBC batches. Statements
+ * exceeding the bind parameter limit are split into several statements,
+ * which always run in one explicit transaction, also in implicit mode.
+ * Statements are cached per row count for the most recently used counts,
+ * since adaptive batch sizes may produce many distinct counts.
+ *
+ * @author Kai Niemi
+ */
+public class ValuesInsertTask extends AbstractInsertTask<ColumnBatch> {
+    private static final int MAX_BIND_PARAMETERS = 65535;
+
+    private static final int MAX_CACHED_STATEMENTS = 16;
+
+    private static final String DML_TEMPLATE = """
+            insert into %s (%s) values
+            """;
+
+    // Guarded by itself
+    private final Map<Integer, String> sqlCache
+            = new LinkedHashMap<>(MAX_CACHED_STATEMENTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > MAX_CACHED_STATEMENTS;
+        }
+    };
+
+    @Override
+    protected String createInsertSql(String tableName, List<String> cols) {
+        return DML_TEMPLATE.formatted(tableName, String.join(",", cols));
+    }
+
+    private String getInsertSql(int rows, int numCols) {
+        synchronized (sqlCache) {
+            String sql = sqlCache.get(rows);
+            if (sql != null) {
+                return sql;
+            }
+        }
+
+        String tuple = "(" + String.join(",", Collections.nCopies(numCols, "?")) + ")";
+        StringBuilder sb = new StringBuilder(getInsertSql());
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                sb.append(',');
+            }
+            sb.append(tuple);
+        }
+
+        String sql = sb.toString();
+        synchronized (sqlCache) {
+            sqlCache.put(rows, sql);
+        }
+        return sql;
+    }
+
+    @Override
+    protected ColumnBatch generateBatch(int batchSize) {
+        return generateColumns(batchSize);
+    }
+
+    @Override
+    protected void executeBatch(ColumnBatch batch) {
+        final int numCols = batch.getNumCols();
+        final int maxRows = MAX_BIND_PARAMETERS / numCols;
+
+        ConnectionCallback<Void> action = connection -> {
+            for (int offset = 0; offset < batch.getRows(); offset += maxRows) {
+                final int rows = Math.min(maxRows, batch.getRows() - offset);
+
+                final int first = offset;
+
+                executeStatement(connection, getInsertSql(rows, numCols), ps -> {
+                    int parameterIndex = 1;
+                    for (int row = first; row < first + rows; row++) {
+                        for (int col = 0; col < numCols; col++) {
+                            batch.bind(ps, parameterIndex++, col, row);
+                        }
+                    }
+
+                    PhaseTimer.mark(PhaseTimer.Phase.BIND);
+
+                    if (ps.executeLargeUpdate() != rows) {
+                        throw new DataAccessException("Rows affected != " + rows);
+                    }
+
+                    PhaseTimer.mark(PhaseTimer.Phase.EXECUTE);
+                    return null;
+                });
+            }
+            return null;
+        };
+
+        execute(action, batch.getRows() > maxRows);
+    }
+}
@@ -0,0 +1,247 @@
+package io.cockroachdb.batch.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.cockroachdb.batch.Task;
+import io.cockroachdb.batch.util.Histogram;
+import io.cockroachdb.batch.util.Metrics;
+import io.cockroachdb.batch.workload.Workload;
+import io.cockroachdb.batch.workload.WorkloadManager;
+
+/**
+ * A load generator process taking part in a coordinated run. The agent
+ * joins the coordinator once its tasks are prepared, waits for the common
+ * start signal and then streams interval metrics per task until its
+ * workloads are done. If a frame fails to send, the stream may be cut
+ * mid-frame, so the agent closes the connection and stops streaming while
+ * its workloads run to completion. The coordinator keeps the metrics of
+ * the last complete frame.
+ *
+ * @author Kai Niemi
+ */
+public class Agent implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(Agent.class);
+
+    /**
+     * Join a coordinator.
+     *
+     * @param address the coordinator address as host:port
+     * @return the agent, connected
+     */
+    public static Agent connect(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Expected coordinator address as host:port: " + address);
+        }
+        String host = address.substring(0, colon);
+        int port = Integer.parseInt(address.substring(colon + 1));
+
+        try {
+            String name = InetAddress.getLocalHost().getHostName() + ":" + ProcessHandle.current().pid();
+            Socket socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+
+            Agent agent = new Agent(name, socket);
+            agent.out.writeInt(Protocol.VERSION);
+            agent.out.writeUTF(name);
+            agent.out.flush();
+
+            logger.info("Joined coordinator at %s as '%s'".formatted(address, name));
+            return agent;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to join coordinator at " + address, e);
+        }
+    }
+
+    private final ScheduledExecutorService scheduledExecutorService
+            = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String name;
+
+    private final Socket socket;
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    private WorkloadManager workloadManager;
+
+    private long startTime;
+
+    private ScheduledFuture<?> schedule;
+
+    private volatile boolean disconnected;
+
+    private Agent(String name, Socket socket) throws IOException {
+        this.name = name;
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Wait for the coordinator's start signal, blocking until all agents
+     * have joined and the common start time is reached.
+     */
+    public void awaitStart() {
+        logger.info("Waiting for coordinator start signal");
+        try {
+            for (; ; ) {
+                byte type = in.readByte();
+                if (type == Protocol.PING) {
+                    out.writeByte(Protocol.PING);
+                    out.flush();
+                } else if (type == Protocol.START) {
+                    long delayMillis = in.readLong();
+                    logger.info("Starting in %d ms".formatted(delayMillis));
+                    if (delayMillis > 0) {
+                        TimeUnit.MILLISECONDS.sleep(delayMillis);
+                    }
+                    return;
+                } else {
+                    throw new IOException("Unexpected message type: " + type);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lost coordinator while waiting for start", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Start streaming interval metrics of all workloads.
+     *
+     * @param workloadManager the workload manager
+     * @param interval        the frame interval
+     * @param timeUnit        the interval time unit
+     */
+    public void scheduleWithPeriod(WorkloadManager workloadManager, long interval, TimeUnit timeUnit) {
+        this.workloadManager = workloadManager;
+        this.startTime = System.nanoTime();
+
+        this.schedule = scheduledExecutorService.scheduleAtFixedRate(() -> {
+            try {
+                sendFrame();
+            } catch (IOException e) {
+                logger.warn("Unable to send metrics to coordinator - disconnecting and running to completion", e);
+                disconnect();
+            }
+        }, interval, interval, timeUnit);
+    }
+
+    // A partly written frame leaves the stream out of sync, so it can't be reused
+    private void disconnect() {
+        disconnected = true;
+        schedule.cancel(false);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Error closing coordinator connection", e);
+        }
+    }
+
+    /**
+     * Send the final metrics once all workloads are done and leave the coordinator,
+     * unless disconnected by an earlier failure.
+     */
+    public void finish() {
+        scheduledExecutorService.shutdownNow();
+        try {
+            scheduledExecutorService.awaitTermination(5, TimeUnit.SECONDS);
+            if (disconnected) {
+                logger.warn("Final metrics not sent since the coordinator connection was lost");
+                return;
+            }
+            sendFrame();
+            synchronized (out) {
+                out.writeByte(Protocol.DONE);
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to send final metrics to coordinator", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendFrame() throws IOException {
+        Map<String, List<Workload<Task>>> workloadsByTask = new LinkedHashMap<>();
+        workloadManager.getWorkloads().forEach(workload ->
+                workloadsByTask.computeIfAbsent(workload.getTaskName(), k -> new ArrayList<>()).add(workload));
+
+        List<MetricsFrame.TaskSample> samples = new ArrayList<>();
+
+        workloadsByTask.forEach((task, workloads) -> {
+            Histogram[] current = {new Histogram(), new Histogram(), new Histogram()};
+            int workers = 0;
+            long success = 0;
+            long transientFail = 0;
+            long nonTransientFail = 0;
+            long rows = 0;
+
+            for (Workload<Task> workload : workloads) {
+                Metrics m = workload.getMetrics();
+                current[0].add(m.getHistogram());
+                current[1].add(m.getServiceTimeHistogram());
+                current[2].add(m.getRetryDelayHistogram());
+                workers += workload.isRunning() ? 1 : 0;
+                success += m.getSuccess();
+                transientFail += m.getTransientFail();
+                nonTransientFail += m.getNonTransientFail();
+                rows += m.getRows();
+            }
+
+            samples.add(new MetricsFrame.TaskSample(task, workers,
+                    success, transientFail, nonTransientFail, rows,
+                    current[0], current[1], current[2]));
+        });
+
+        MetricsFrame frame = new MetricsFrame((System.nanoTime() - startTime) / 1_000_000_000.0, samples);
+
+        synchronized (out) {
+            out.writeByte(Protocol.FRAME);
+            frame.writeTo(out);
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduledExecutorService.shutdownNow();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.warn("Error closing coordinator connection", e);
+        }
+    }
+}
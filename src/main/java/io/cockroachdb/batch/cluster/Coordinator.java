@@ -0,0 +1,371 @@
+package io.cockroachdb.batch.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.cockroachdb.batch.util.Histogram;
+import io.cockroachdb.batch.util.Metrics;
+import io.cockroachdb.batch.workload.MetricsPrinter;
+
+/**
+ * Coordinates a run across several agent processes, each being a load
+ * generator with its own tasks. Once all agents have joined, they are
+ * given a common start time compensated for each agent's network delay.
+ * Interval metrics streamed back by the agents are merged per task, with
+ * latency histograms merged bucket by bucket for exact percentiles across
+ * all agents, and printed as one view and a single summary. Agents send
+ * cumulative values, and the values of each print interval are the
+ * difference from the previous print.
+ *
+ * @author Kai Niemi
+ */
+public class Coordinator {
+    private static final Logger logger = LoggerFactory.getLogger(Coordinator.class);
+
+    private static class TaskState {
+        // Cumulative as of the latest frame, replaced by each frame
+        Histogram response = new Histogram();
+
+        Histogram service = new Histogram();
+
+        Histogram retryDelay = new Histogram();
+
+        // Cumulative as of the previous print, for the values recorded since
+        Histogram responseAtPrint = new Histogram();
+
+        Histogram serviceAtPrint = new Histogram();
+
+        int workers;
+
+        long success;
+
+        long transientFail;
+
+        long nonTransientFail;
+
+        long rows;
+    }
+
+    private static class AgentState {
+        final String name;
+
+        final Socket socket;
+
+        final DataInputStream in;
+
+        final DataOutputStream out;
+
+        final Map<String, TaskState> tasks = new LinkedHashMap<>();
+
+        double elapsedSeconds;
+
+        boolean done;
+
+        boolean lost;
+
+        AgentState(String name, Socket socket, DataInputStream in, DataOutputStream out) {
+            this.name = name;
+            this.socket = socket;
+            this.in = in;
+            this.out = out;
+        }
+    }
+
+    private final ScheduledExecutorService scheduledExecutorService
+            = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int port;
+
+    private final int agentCount;
+
+    private final List<AgentState> agents = new ArrayList<>();
+
+    private Duration startDelay = Duration.ofSeconds(3);
+
+    private long lastPrintTime;
+
+    /**
+     * @param port       the port to listen on for agents
+     * @param agentCount number of agents to wait for before starting
+     */
+    public Coordinator(int port, int agentCount) {
+        if (agentCount <= 0) {
+            throw new IllegalArgumentException("Number of agents must be > 0");
+        }
+        this.port = port;
+        this.agentCount = agentCount;
+    }
+
+    /**
+     * @param startDelay time from the start signal to the common start, allowing it to reach all agents
+     */
+    public void setStartDelay(Duration startDelay) {
+        this.startDelay = startDelay;
+    }
+
+    /**
+     * Run until all agents are done, printing merged metrics periodically and a summary at the end.
+     *
+     * @throws IOException on network errors before the start
+     */
+    public void run() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            logger.info("Waiting for %d agents on port %d".formatted(agentCount, serverSocket.getLocalPort()));
+
+            while (agents.size() < agentCount) {
+                Socket socket = serverSocket.accept();
+                try {
+                    agents.add(join(socket));
+                } catch (IOException e) {
+                    logger.warn("Rejected agent from %s: %s".formatted(socket.getRemoteSocketAddress(), e));
+                    socket.close();
+                }
+            }
+        }
+
+        start();
+
+        CountDownLatch latch = new CountDownLatch(agents.size());
+        agents.forEach(agent -> Thread.ofVirtual()
+                .name("agent " + agent.name)
+                .start(() -> {
+                    try {
+                        receive(agent);
+                    } finally {
+                        latch.countDown();
+                    }
+                }));
+
+        lastPrintTime = System.nanoTime();
+        scheduledExecutorService.scheduleAtFixedRate(this::printMetrics, 5, 5, TimeUnit.SECONDS);
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        scheduledExecutorService.shutdownNow();
+
+        printSummary();
+
+        agents.forEach(agent -> {
+            try {
+                agent.socket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        });
+    }
+
+    private AgentState join(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+        socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(30));
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        int version = in.readInt();
+        if (version != Protocol.VERSION) {
+            throw new IOException("Protocol version mismatch: expected %d got %d"
+                    .formatted(Protocol.VERSION, version));
+        }
+
+        String name = in.readUTF();
+        logger.info("Agent '%s' joined from %s (%d of %d)"
+                .formatted(name, socket.getRemoteSocketAddress(), agents.size() + 1, agentCount));
+
+        return new AgentState(name, socket, in, out);
+    }
+
+    private void start() throws IOException {
+        // Compensate each agent's start delay for the one-way network delay
+        Map<AgentState, Long> roundTripNanos = new LinkedHashMap<>();
+        for (AgentState agent : agents) {
+            long t0 = System.nanoTime();
+            agent.out.writeByte(Protocol.PING);
+            agent.out.flush();
+            if (agent.in.readByte() != Protocol.PING) {
+                throw new IOException("Expected ping reply from agent: " + agent.name);
+            }
+            roundTripNanos.put(agent, System.nanoTime() - t0);
+        }
+
+        final long startTime = System.nanoTime() + startDelay.toNanos();
+
+        for (AgentState agent : agents) {
+            long delayNanos = startTime - System.nanoTime() - roundTripNanos.get(agent) / 2;
+            agent.out.writeByte(Protocol.START);
+            agent.out.writeLong(TimeUnit.NANOSECONDS.toMillis(Math.max(0, delayNanos)));
+            agent.out.flush();
+            // Frames are sent at intervals while the run can go on for hours
+            agent.socket.setSoTimeout(0);
+
+            logger.info("Agent '%s' starting in %d ms (round-trip %.2f ms)"
+                    .formatted(agent.name, TimeUnit.NANOSECONDS.toMillis(delayNanos),
+                            roundTripNanos.get(agent) / 1_000_000.0));
+        }
+    }
+
+    private void receive(AgentState agent) {
+        boolean lost = true;
+        try {
+            for (; ; ) {
+                byte type = agent.in.readByte();
+                if (type == Protocol.FRAME) {
+                    merge(agent, MetricsFrame.readFrom(agent.in));
+                } else if (type == Protocol.DONE) {
+                    logger.info("Agent '%s' done".formatted(agent.name));
+                    lost = false;
+                    break;
+                } else {
+                    throw new IOException("Unexpected message type: " + type);
+                }
+            }
+        } catch (EOFException e) {
+            logger.warn("Agent '%s' disconnected before done - its last reported metrics are kept"
+                    .formatted(agent.name));
+        } catch (IOException e) {
+            logger.warn("Lost agent '%s' - its last reported metrics are kept".formatted(agent.name), e);
+        } finally {
+            synchronized (this) {
+                agent.done = true;
+                agent.lost = lost;
+                agent.tasks.values().forEach(task -> task.workers = 0);
+            }
+        }
+    }
+
+    private synchronized void merge(AgentState agent, MetricsFrame frame) {
+        agent.elapsedSeconds = frame.elapsedSeconds();
+
+        frame.tasks().forEach(sample -> {
+            TaskState task = agent.tasks.computeIfAbsent(sample.task(), k -> new TaskState());
+            task.response = sample.response();
+            task.service = sample.service();
+            task.retryDelay = sample.retryDelay();
+            task.workers = sample.workers();
+            task.success = sample.success();
+            task.transientFail = sample.transientFail();
+            task.nonTransientFail = sample.nonTransientFail();
+            task.rows = sample.rows();
+        });
+    }
+
+    /**
+     * Merge the metrics of a task across agents.
+     *
+     * @param taskName       the task name or null for all tasks
+     * @param windowSeconds  the time since the previous print
+     * @return frozen metrics
+     */
+    private Metrics mergeTask(String taskName, double windowSeconds) {
+        Histogram response = new Histogram();
+        Histogram service = new Histogram();
+        Histogram retryDelay = new Histogram();
+        Histogram responseWindow = new Histogram();
+        Histogram serviceWindow = new Histogram();
+        long success = 0;
+        long transientFail = 0;
+        long nonTransientFail = 0;
+        long rows = 0;
+        double elapsedSeconds = 0;
+
+        for (AgentState agent : agents) {
+            for (Map.Entry<String, TaskState> e : agent.tasks.entrySet()) {
+                if (taskName != null && !taskName.equals(e.getKey())) {
+                    continue;
+                }
+                TaskState task = e.getValue();
+                response.add(task.response);
+                service.add(task.service);
+                retryDelay.add(task.retryDelay);
+                responseWindow.add(task.response.delta(task.responseAtPrint));
+                serviceWindow.add(task.service.delta(task.serviceAtPrint));
+                success += task.success;
+                transientFail += task.transientFail;
+                nonTransientFail += task.nonTransientFail;
+                rows += task.rows;
+                elapsedSeconds = Math.max(elapsedSeconds, agent.elapsedSeconds);
+            }
+        }
+
+        double opsPerSec = windowSeconds > 0 ? responseWindow.getCount() / windowSeconds : 0;
+
+        return Metrics.builder()
+                .withHistograms(response, responseWindow)
+                .withServiceHistograms(service, serviceWindow)
+                .withRetryDelayHistogram(retryDelay)
+                .withOps(opsPerSec, opsPerSec * 60)
+                .withSuccess((int) success)
+                .withFails((int) transientFail, (int) nonTransientFail)
+                .withRows(rows)
+                .withExecutionTimeSeconds(elapsedSeconds)
+                .build();
+    }
+
+    private synchronized void printMetrics() {
+        long now = System.nanoTime();
+        double windowSeconds = (now - lastPrintTime) / 1_000_000_000.0;
+        lastPrintTime = now;
+
+        Map<String, Metrics> metrics = new LinkedHashMap<>();
+        agents.forEach(agent -> agent.tasks.keySet().forEach(taskName ->
+                metrics.computeIfAbsent(taskName, k -> mergeTask(k, windowSeconds))));
+
+        MetricsPrinter.printMergedMetrics(metrics);
+
+        long running = agents.stream().filter(agent -> !agent.done).count();
+        int workers = agents.stream()
+                .flatMap(agent -> agent.tasks.values().stream())
+                .mapToInt(task -> task.workers)
+                .sum();
+        System.out.printf("%4s %-25s running=%d/%d workers=%d\n", "", "agents", running, agents.size(), workers);
+
+        // Frames replace rather than modify the cumulative histograms
+        agents.forEach(agent -> agent.tasks.values().forEach(task -> {
+            task.responseAtPrint = task.response;
+            task.serviceAtPrint = task.service;
+        }));
+    }
+
+    private synchronized void printSummary() {
+        MetricsPrinter.printTotals(mergeTask(null, 0));
+
+        System.out.printf("Agents: %d\n", agents.size());
+        agents.forEach(agent -> {
+            long rows = agent.tasks.values().stream().mapToLong(task -> task.rows).sum();
+            Histogram h = new Histogram();
+            agent.tasks.values().forEach(task -> h.add(task.response));
+            System.out.printf("  %-30s %,12d rows %,12.1f rows/s p99 %.2f ms%s\n",
+                    agent.name,
+                    rows,
+                    rows / Math.max(1, agent.elapsedSeconds),
+                    h.getValueAtPercentile(.99) / 1_000_000.0,
+                    agent.lost ? " (lost)" : "");
+        });
+    }
+}
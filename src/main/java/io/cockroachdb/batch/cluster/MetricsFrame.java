@@ -0,0 +1,79 @@
+package io.cockroachdb.batch.cluster;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.cockroachdb.batch.util.Histogram;
+
+/**
+ * Interval metrics streamed from an agent to the coordinator, one sample
+ * per task. Both counters and histograms are cumulative since the start,
+ * so each frame replaces the previous one and the coordinator can merge
+ * frames from agents in any interval. Histograms are written in sparse
+ * form to keep frames compact.
+ *
+ * @param elapsedSeconds time since the agent started its workloads
+ * @param tasks          the samples per task
+ * @author Kai Niemi
+ */
+record MetricsFrame(double elapsedSeconds, List<TaskSample> tasks) {
+    /**
+     * @param task             the task or scenario instance name
+     * @param workers          number of running workers
+     * @param success          cumulative successful batches
+     * @param transientFail    cumulative transient failures
+     * @param nonTransientFail cumulative non-transient failures
+     * @param rows             cumulative rows
+     * @param response         cumulative batch latency
+     * @param service          cumulative service time (open-loop only)
+     * @param retryDelay       cumulative retry backoff delay
+     */
+    record TaskSample(String task,
+                      int workers,
+                      long success,
+                      long transientFail,
+                      long nonTransientFail,
+                      long rows,
+                      Histogram response,
+                      Histogram service,
+                      Histogram retryDelay) {
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(elapsedSeconds);
+        out.writeInt(tasks.size());
+        for (TaskSample sample : tasks) {
+            out.writeUTF(sample.task());
+            out.writeInt(sample.workers());
+            out.writeLong(sample.success());
+            out.writeLong(sample.transientFail());
+            out.writeLong(sample.nonTransientFail());
+            out.writeLong(sample.rows());
+            sample.response().writeTo(out);
+            sample.service().writeTo(out);
+            sample.retryDelay().writeTo(out);
+        }
+    }
+
+    static MetricsFrame readFrom(DataInput in) throws IOException {
+        double elapsedSeconds = in.readDouble();
+        int count = in.readInt();
+        List<TaskSample> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new TaskSample(
+                    in.readUTF(),
+                    in.readInt(),
+                    in.readLong(),
+                    in.readLong(),
+                    in.readLong(),
+                    in.readLong(),
+                    Histogram.readFrom(in),
+                    Histogram.readFrom(in),
+                    Histogram.readFrom(in)));
+        }
+        return new MetricsFrame(elapsedSeconds, tasks);
+    }
+}
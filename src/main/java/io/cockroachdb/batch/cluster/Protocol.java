@@ -0,0 +1,28 @@
+package io.cockroachdb.batch.cluster;
+
+/**
+ * Message types of the coordinator protocol, over a plain TCP stream:
+ * <pre>
+ * agent -> coordinator: version, name
+ * coordinator -> agent: PING            agent -> coordinator: PING (echo for round-trip time)
+ * coordinator -> agent: START delay     agent waits for the delay and starts its workloads
+ * agent -> coordinator: FRAME metrics   repeated at the frame interval
+ * agent -> coordinator: DONE            after the final frame
+ * </pre>
+ *
+ * @author Kai Niemi
+ */
+final class Protocol {
+    static final int VERSION = 2;
+
+    static final byte PING = 'P';
+
+    static final byte START = 'S';
+
+    static final byte FRAME = 'F';
+
+    static final byte DONE = 'D';
+
+    private Protocol() {
+    }
+}
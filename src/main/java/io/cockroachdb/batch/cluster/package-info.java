@@ -0,0 +1,6 @@
+/**
+ * Coordination of several load generator processes with merged metrics.
+ *
+ * @author Kai Niemi
+ */
+package io.cockroachdb.batch.cluster;
@@ -0,0 +1,240 @@
+package io.cockroachdb.batch.jdbc;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Locale;
+
+import org.postgresql.copy.CopyIn;
+
+/**
+ * A reusable byte buffer for encoding rows in COPY text or CSV format
+ * and streaming them to a {@link CopyIn} operation in chunks.
+ * Not thread-safe, a buffer is owned by one thread at a time.
+ *
+ * @author Kai Niemi
+ */
+public class CopyBuffer {
+    public enum Format {
+        TEXT,
+        CSV;
+
+        public static Format parse(String name) {
+            return valueOf(name.toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final Format format;
+
+    private byte[] buffer;
+
+    private int position;
+
+    private int rowCount;
+
+    private boolean firstColumn = true;
+
+    public CopyBuffer(Format format, int initialCapacity) {
+        this.format = format;
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public void reset() {
+        position = 0;
+        rowCount = 0;
+        firstColumn = true;
+    }
+
+    public void append(CharSequence value) {
+        appendDelimiter();
+        if (format == Format.CSV && requiresQuotes(value)) {
+            appendByte('"');
+            appendEscaped(value);
+            appendByte('"');
+        } else {
+            appendEscaped(value);
+        }
+    }
+
+    public void append(long value) {
+        appendDelimiter();
+        appendLong(value);
+    }
+
+    /**
+     * Append a decimal value given as an unscaled long and a scale,
+     * without creating a BigDecimal.
+     */
+    public void appendDecimal(long unscaled, int scale) {
+        appendDelimiter();
+        if (unscaled < 0) {
+            appendByte('-');
+            unscaled = -unscaled;
+        }
+        long divisor = 1;
+        for (int i = 0; i < scale; i++) {
+            divisor *= 10;
+        }
+        appendLong(unscaled / divisor);
+        if (scale > 0) {
+            appendByte('.');
+            long fraction = unscaled % divisor;
+            for (long d = divisor / 10; d > 0; d /= 10) {
+                appendByte((char) ('0' + (fraction / d) % 10));
+            }
+        }
+    }
+
+    /**
+     * Append a byte array in bytea hex format.
+     */
+    public void appendHex(byte[] bytes) {
+        appendDelimiter();
+        ensureCapacity(bytes.length * 2 + 3);
+        if (format == Format.TEXT) {
+            buffer[position++] = '\\';
+        }
+        buffer[position++] = '\\';
+        buffer[position++] = 'x';
+        for (byte b : bytes) {
+            buffer[position++] = HEX[(b >> 4) & 0xf];
+            buffer[position++] = HEX[b & 0xf];
+        }
+    }
+
+    public void endRow() {
+        appendByte('\n');
+        rowCount++;
+        firstColumn = true;
+    }
+
+    /**
+     * Stream the encoded rows to a copy operation.
+     *
+     * @param copyIn    the copy operation
+     * @param chunkSize max number of bytes per write
+     * @throws SQLException on write failure
+     */
+    public void writeTo(CopyIn copyIn, int chunkSize) throws SQLException {
+        for (int offset = 0; offset < position; offset += chunkSize) {
+            copyIn.writeToCopy(buffer, offset, Math.min(chunkSize, position - offset));
+        }
+    }
+
+    private void appendDelimiter() {
+        if (!firstColumn) {
+            appendByte(format == Format.CSV ? ',' : '\t');
+        }
+        firstColumn = false;
+    }
+
+    private boolean requiresQuotes(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return value.isEmpty();
+    }
+
+    private void appendEscaped(CharSequence value) {
+        final int length = value.length();
+        ensureCapacity(length * 2);
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                appendUtf8(value.subSequence(i, length));
+                return;
+            }
+            if (format == Format.TEXT) {
+                switch (c) {
+                    case '\\' -> {
+                        buffer[position++] = '\\';
+                        buffer[position++] = '\\';
+                    }
+                    case '\t' -> {
+                        buffer[position++] = '\\';
+                        buffer[position++] = 't';
+                    }
+                    case '\n' -> {
+                        buffer[position++] = '\\';
+                        buffer[position++] = 'n';
+                    }
+                    case '\r' -> {
+                        buffer[position++] = '\\';
+                        buffer[position++] = 'r';
+                    }
+                    default -> buffer[position++] = (byte) c;
+                }
+            } else {
+                if (c == '"') {
+                    buffer[position++] = '"';
+                }
+                buffer[position++] = (byte) c;
+            }
+        }
+    }
+
+    private void appendUtf8(CharSequence value) {
+        // Slow path for non-ASCII content, escaping rules only concern ASCII characters
+        String s = value.toString();
+        if (format == Format.TEXT) {
+            s = s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+        } else {
+            s = s.replace("\"", "\"\"");
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            for (char c : Long.toString(value).toCharArray()) {
+                appendByte(c);
+            }
+            return;
+        }
+        if (value < 0) {
+            appendByte('-');
+            value = -value;
+        }
+        ensureCapacity(19);
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // Reverse digits in place
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte t = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = t;
+        }
+    }
+
+    private void appendByte(char c) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + extra)];
+            System.arraycopy(buffer, 0, newBuffer, 0, position);
+            buffer = newBuffer;
+        }
+    }
+}
@@ -5,6 +5,10 @@ public class DataAccessException extends RuntimeException {
         super(message);
     }
 
+    public DataAccessException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
     public DataAccessException(Throwable cause) {
         super(cause);
     }
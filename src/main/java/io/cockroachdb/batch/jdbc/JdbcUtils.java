@@ -8,6 +8,8 @@ import java.sql.SQLException;
 
 import javax.sql.DataSource;
 
+import io.cockroachdb.batch.util.PhaseTimer;
+
 public abstract class JdbcUtils {
     private JdbcUtils() {
     }
@@ -16,10 +18,36 @@ public abstract class JdbcUtils {
                                        String sql,
                                        ResultSetCallback<T> action)
             throws DataAccessException {
+        return queryForEntity(dataSource, sql, ps -> null, action);
+    }
+
+    /**
+     * Support method for executing one query in an implicit transaction
+     * with bind parameters.
+     *
+     * @param dataSource the data source
+     * @param sql        the query
+     * @param binder     callback binding the query parameters
+     * @param action     the result set callback
+     * @param <T>        the result entity type
+     * @return any result entity from the callback
+     */
+    public static <T> T queryForEntity(DataSource dataSource,
+                                       String sql,
+                                       StatementCallback<?> binder,
+                                       ResultSetCallback<T> action)
+            throws DataAccessException {
         try (Connection connection = dataSource.getConnection()) {
+            PhaseTimer.mark(PhaseTimer.Phase.POOL_WAIT);
+
             try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                binder.process(ps);
+                PhaseTimer.mark(PhaseTimer.Phase.BIND);
+
                 try (ResultSet rs = ps.executeQuery()) {
-                    return action.process(rs);
+                    T result = action.process(rs);
+                    PhaseTimer.mark(PhaseTimer.Phase.EXECUTE);
+                    return result;
                 }
             }
         } catch (SQLException ex) {
@@ -42,8 +70,12 @@ public abstract class JdbcUtils {
                 throw new IllegalStateException("Connection auto-commit is false!");
             }
 
+            PhaseTimer.mark(PhaseTimer.Phase.POOL_WAIT);
+
             try {
-                return action.process(conn);
+                T result = action.process(conn);
+                PhaseTimer.mark(PhaseTimer.Phase.EXECUTE);
+                return result;
             } catch (RuntimeException | Error ex) {
                 throw ex;
             } catch (Throwable ex) {
@@ -68,9 +100,12 @@ public abstract class JdbcUtils {
         try (Connection conn = ds.getConnection()) {
             conn.setAutoCommit(false);
 
+            PhaseTimer.mark(PhaseTimer.Phase.POOL_WAIT);
+
             T result;
             try {
                 result = action.process(conn);
+                PhaseTimer.mark(PhaseTimer.Phase.EXECUTE);
             } catch (RuntimeException | Error ex) {
                 conn.rollback();
                 throw ex;
@@ -80,6 +115,7 @@ public abstract class JdbcUtils {
                         "TransactionCallback threw undeclared checked exception");
             }
             conn.commit();
+            PhaseTimer.mark(PhaseTimer.Phase.COMMIT);
             return result;
         } catch (SQLException e) {
             throw new DataAccessException(e);
@@ -0,0 +1,115 @@
+package io.cockroachdb.batch.jdbc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import io.cockroachdb.batch.util.Histogram;
+import io.cockroachdb.batch.util.RollingHistogram;
+
+/**
+ * Connection pool metrics collected via Hikari's metrics tracker SPI.
+ * Tracks connection acquire and usage times in cumulative and rolling
+ * window histograms, along with timeouts and the pool state.
+ *
+ * @author Kai Niemi
+ */
+public class PoolMetrics implements MetricsTrackerFactory {
+    private final Histogram acquireTime = new Histogram();
+
+    private final RollingHistogram acquireWindow = new RollingHistogram(60, TimeUnit.SECONDS);
+
+    private final Histogram usageTime = new Histogram();
+
+    private final RollingHistogram usageWindow = new RollingHistogram(60, TimeUnit.SECONDS);
+
+    private final Histogram creationTime = new Histogram();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                creationTime.record(TimeUnit.MILLISECONDS.toNanos(connectionCreatedMillis));
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireTime.record(elapsedAcquiredNanos);
+                acquireWindow.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis);
+                usageTime.record(nanos);
+                usageWindow.record(nanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * @return true if the pool has been started
+     */
+    public boolean isAvailable() {
+        return poolStats != null;
+    }
+
+    public int getActiveConnections() {
+        return poolStats != null ? poolStats.getActiveConnections() : 0;
+    }
+
+    public int getIdleConnections() {
+        return poolStats != null ? poolStats.getIdleConnections() : 0;
+    }
+
+    public int getTotalConnections() {
+        return poolStats != null ? poolStats.getTotalConnections() : 0;
+    }
+
+    public int getMaxConnections() {
+        return poolStats != null ? poolStats.getMaxConnections() : 0;
+    }
+
+    public int getPendingThreads() {
+        return poolStats != null ? poolStats.getPendingThreads() : 0;
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public Histogram getAcquireTimeHistogram() {
+        return acquireTime;
+    }
+
+    public Histogram getAcquireWindowHistogram() {
+        return acquireWindow.snapshot();
+    }
+
+    public Histogram getUsageTimeHistogram() {
+        return usageTime;
+    }
+
+    public Histogram getUsageWindowHistogram() {
+        return usageWindow.snapshot();
+    }
+
+    public Histogram getCreationTimeHistogram() {
+        return creationTime;
+    }
+}
@@ -0,0 +1,151 @@
+package io.cockroachdb.batch.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side transaction retry using the CockroachDB savepoint protocol.
+ * The transaction body runs under a SAVEPOINT cockroach_restart, and on a
+ * serialization failure (40001) it's rolled back to the savepoint and re-run
+ * in place, on the same connection and with the same already built batch.
+ * A successful attempt ends with RELEASE SAVEPOINT, at which point the
+ * transaction is committed.
+ * <p>
+ * This avoids rolling back the whole transaction, returning the connection
+ * and regenerating the batch on each retry. Only applicable to explicit
+ * transactions, with the callback being safe to re-run.
+ *
+ * @author Kai Niemi
+ */
+public class SavepointRetry {
+    public static final String SAVEPOINT_NAME = "cockroach_restart";
+
+    private static final String SERIALIZATION_FAILURE = "40001";
+
+    private static final long MAX_BACKOFF_MILLIS = 100;
+
+    private static boolean isSerializationFailure(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    if (SERIALIZATION_FAILURE.equals(next.getSQLState())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private final int maxAttempts;
+
+    private final LongAdder transactions = new LongAdder();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder exhausted = new LongAdder();
+
+    private final AtomicInteger maxAttemptsSeen = new AtomicInteger();
+
+    /**
+     * @param maxAttempts max attempts per transaction including the first, must be > 0
+     */
+    public SavepointRetry(int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be > 0");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Wrap a transaction body in the savepoint retry protocol. The returned callback
+     * must be executed on a connection with auto-commit disabled.
+     *
+     * @param action the transaction body, possibly run several times
+     * @param <T>    the result entity type
+     * @return the wrapping callback
+     */
+    public <T> ConnectionCallback<T> wrap(ConnectionCallback<T> action) {
+        return connection -> execute(connection, action);
+    }
+
+    private <T> T execute(Connection connection, ConnectionCallback<T> action) throws SQLException {
+        transactions.increment();
+
+        final Savepoint savepoint = connection.setSavepoint(SAVEPOINT_NAME);
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = action.process(connection);
+                connection.releaseSavepoint(savepoint);
+                recordAttempts(attempt);
+                return result;
+            } catch (SQLException | RuntimeException ex) {
+                if (!isSerializationFailure(ex)) {
+                    recordAttempts(attempt);
+                    throw ex;
+                }
+                if (attempt >= maxAttempts) {
+                    recordAttempts(attempt);
+                    exhausted.increment();
+                    throw ex;
+                }
+
+                connection.rollback(savepoint);
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void recordAttempts(int attempts) {
+        maxAttemptsSeen.accumulateAndGet(attempts, Math::max);
+    }
+
+    private void backoff(int attempt) {
+        long bound = Math.min(MAX_BACKOFF_MILLIS, 1L << Math.min(attempt, 10));
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException(e);
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return number of transactions started
+     */
+    public long getTransactions() {
+        return transactions.sum();
+    }
+
+    /**
+     * @return number of in-place retries across all transactions
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return number of transactions failing after max attempts
+     */
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    /**
+     * @return highest number of attempts needed by any transaction
+     */
+    public int getMaxAttemptsSeen() {
+        return maxAttemptsSeen.get();
+    }
+}
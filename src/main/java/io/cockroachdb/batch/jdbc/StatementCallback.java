@@ -0,0 +1,14 @@
+package io.cockroachdb.batch.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Callback for operating on a JDBC PreparedStatement.
+ *
+ * @param <T>
+ */
+@FunctionalInterface
+public interface StatementCallback<T> {
+    T process(PreparedStatement ps) throws SQLException;
+}
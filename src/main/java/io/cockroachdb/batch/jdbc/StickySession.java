@@ -0,0 +1,185 @@
+package io.cockroachdb.batch.jdbc;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import io.cockroachdb.batch.util.PhaseTimer;
+
+/**
+ * A connection pinned by a single worker for its whole lifetime, along
+ * with a small cache of prepared statements. This bypasses pool checkout,
+ * auto-commit toggling and statement preparation on each call.
+ * <p>
+ * The connection and its statements are closed and transparently
+ * re-established on the next call after a connection error.
+ * Not thread-safe, a session is owned by one worker thread.
+ *
+ * @author Kai Niemi
+ */
+public class StickySession implements AutoCloseable {
+    private static final int MAX_CACHED_STATEMENTS = 16;
+
+    private final DataSource dataSource;
+
+    private final Map<String, PreparedStatement> statements
+            = new LinkedHashMap<>(MAX_CACHED_STATEMENTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > MAX_CACHED_STATEMENTS) {
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private Connection connection;
+
+    private int connects;
+
+    public StickySession(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    private static boolean isConnectionError(SQLException ex) {
+        String sqlState = ex.getSQLState();
+        return sqlState != null && (sqlState.startsWith("08") || sqlState.equals("57P01"));
+    }
+
+    // Connection errors may also arrive wrapped, like in a DataAccessException
+    private static boolean hasConnectionError(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && isConnectionError(sqlException)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (connection == null) {
+            connection = dataSource.getConnection();
+            connects++;
+        }
+        return connection;
+    }
+
+    /**
+     * Get a prepared statement from the cache, or prepare it on the pinned
+     * connection. The statement must not be closed by the caller.
+     *
+     * @param sql the SQL statement
+     * @return a cached prepared statement with cleared parameters
+     * @throws SQLException on preparation failure
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps == null) {
+            ps = getConnection().prepareStatement(sql);
+            statements.put(sql, ps);
+        } else {
+            ps.clearParameters();
+            ps.clearBatch();
+        }
+        return ps;
+    }
+
+    /**
+     * Execute the callback on the pinned connection in an implicit (auto-commit)
+     * or explicit transaction.
+     *
+     * @param implicit true for auto-commit
+     * @param action   the connection callback
+     * @param <T>      the result entity type
+     * @return any result entity from the execution
+     */
+    public <T> T execute(boolean implicit, ConnectionCallback<T> action) {
+        try {
+            Connection conn = getConnection();
+            if (conn.getAutoCommit() != implicit) {
+                conn.setAutoCommit(implicit);
+            }
+
+            PhaseTimer.mark(PhaseTimer.Phase.POOL_WAIT);
+
+            T result;
+            try {
+                result = action.process(conn);
+                PhaseTimer.mark(PhaseTimer.Phase.EXECUTE);
+            } catch (RuntimeException | Error ex) {
+                rollback(conn, implicit);
+                if (hasConnectionError(ex)) {
+                    invalidate();
+                }
+                throw ex;
+            } catch (SQLException ex) {
+                rollback(conn, implicit);
+                throw ex;
+            } catch (Throwable ex) {
+                rollback(conn, implicit);
+                throw new UndeclaredThrowableException(ex,
+                        "TransactionCallback threw undeclared checked exception");
+            }
+            if (!implicit) {
+                conn.commit();
+                PhaseTimer.mark(PhaseTimer.Phase.COMMIT);
+            }
+            return result;
+        } catch (SQLException e) {
+            if (isConnectionError(e)) {
+                invalidate();
+            }
+            throw new DataAccessException(e);
+        }
+    }
+
+    private void rollback(Connection conn, boolean implicit) {
+        if (implicit) {
+            return;
+        }
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            // Broken connection, re-establish on next call
+            invalidate();
+        }
+    }
+
+    /**
+     * Close the pinned connection and its statements, to be re-established on next use.
+     */
+    public void invalidate() {
+        statements.values().forEach(StickySession::closeQuietly);
+        statements.clear();
+        if (connection != null) {
+            closeQuietly(connection);
+            connection = null;
+        }
+    }
+
+    /**
+     * @return number of times a connection was acquired, including the initial one
+     */
+    public int getConnects() {
+        return connects;
+    }
+
+    @Override
+    public void close() {
+        invalidate();
+    }
+}
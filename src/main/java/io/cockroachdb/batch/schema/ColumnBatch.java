@@ -0,0 +1,95 @@
+package io.cockroachdb.batch.schema;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import io.cockroachdb.batch.jdbc.CopyBuffer;
+import io.cockroachdb.batch.util.RandomData;
+
+/**
+ * A batch of generated rows in column-major layout, ready to be bound
+ * to a statement either row by row or as one array per column. Each
+ * column is held in a type-specialized array.
+ *
+ * @author Kai Niemi
+ */
+public class ColumnBatch {
+    public static ColumnBatch generate(int rows, Schema schema, RandomData.Entropy entropy) {
+        return generate(rows, schema, entropy, null);
+    }
+
+    /**
+     * Generate a batch with client-generated primary keys in the leading key columns.
+     *
+     * @param rows    the number of rows
+     * @param schema  the schema including any key columns
+     * @param entropy the value entropy
+     * @param keys    the key generator, or null if the schema has no key columns
+     * @return the batch
+     */
+    public static ColumnBatch generate(int rows, Schema schema, RandomData.Entropy entropy, KeyGenerator keys) {
+        Object[] columns = new Object[schema.size()];
+        for (int col = 0; col < columns.length; col++) {
+            ColumnSpec spec = schema.getColumn(col);
+            columns[col] = spec.getType().newColumn(rows);
+            if (col >= schema.getKeyCount()) {
+                spec.getType().generate(columns[col], rows, spec.getSize(), entropy);
+            }
+        }
+        if (keys != null && schema.getKeyCount() > 0) {
+            keys.generate(columns, rows);
+        }
+        return new ColumnBatch(rows, schema, columns);
+    }
+
+    private final int rows;
+
+    private final Schema schema;
+
+    private final Object[] columns;
+
+    private ColumnBatch(int rows, Schema schema, Object[] columns) {
+        this.rows = rows;
+        this.schema = schema;
+        this.columns = columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getNumCols() {
+        return columns.length;
+    }
+
+    Schema getSchema() {
+        return schema;
+    }
+
+    Object getColumn(int col) {
+        return columns[col];
+    }
+
+    /**
+     * Bind a single value to a statement parameter.
+     */
+    public void bind(PreparedStatement ps, int parameterIndex, int col, int row) throws SQLException {
+        schema.getColumn(col).getType().bind(ps, parameterIndex, columns[col], row);
+    }
+
+    /**
+     * Create a SQL array of all values in a column.
+     */
+    public Array toArray(Connection connection, int col) throws SQLException {
+        return schema.getColumn(col).getType().toArray(connection, columns[col]);
+    }
+
+    /**
+     * Encode a single value in COPY format.
+     */
+    public void encode(CopyBuffer buffer, int col, int row) {
+        schema.getColumn(col).getType().encode(buffer, columns[col], row);
+    }
+}
@@ -0,0 +1,41 @@
+package io.cockroachdb.batch.schema;
+
+/**
+ * A named and typed column definition.
+ *
+ * @author Kai Niemi
+ */
+public class ColumnSpec {
+    private final String name;
+
+    private final ColumnType type;
+
+    private final int size;
+
+    public ColumnSpec(String name, ColumnType type, int size) {
+        this.name = name;
+        this.type = type;
+        this.size = size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ColumnType getType() {
+        return type;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String ddl() {
+        return "%s %s null".formatted(name, type.ddl(size));
+    }
+
+    @Override
+    public String toString() {
+        return ddl();
+    }
+}
@@ -0,0 +1,354 @@
+package io.cockroachdb.batch.schema;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.postgresql.PGConnection;
+
+import io.cockroachdb.batch.jdbc.CopyBuffer;
+import io.cockroachdb.batch.util.RandomData;
+
+/**
+ * Supported column types, each with a type-specialized value generator,
+ * statement binder, array factory and COPY encoder. Generated values are
+ * held in primitive arrays where possible to avoid boxing.
+ *
+ * @author Kai Niemi
+ */
+public enum ColumnType {
+    INT8("int8") {
+        @Override
+        public String ddl(int size) {
+            return "int8";
+        }
+
+        @Override
+        Object newColumn(int rows) {
+            return new long[rows];
+        }
+
+        @Override
+        void generate(Object column, int rows, int size, RandomData.Entropy entropy) {
+            long[] values = (long[]) column;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int row = 0; row < rows; row++) {
+                values[row] = random.nextLong();
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, int parameterIndex, Object column, int row) throws SQLException {
+            ps.setLong(parameterIndex, ((long[]) column)[row]);
+        }
+
+        @Override
+        Array toArray(Connection connection, Object column) throws SQLException {
+            return connection.unwrap(PGConnection.class).createArrayOf(getArrayType(), column);
+        }
+
+        @Override
+        void encode(CopyBuffer buffer, Object column, int row) {
+            buffer.append(((long[]) column)[row]);
+        }
+    },
+    UUID("uuid") {
+        @Override
+        public String ddl(int size) {
+            return "uuid";
+        }
+
+        @Override
+        Object newColumn(int rows) {
+            return new long[rows * 2];
+        }
+
+        @Override
+        void generate(Object column, int rows, int size, RandomData.Entropy entropy) {
+            long[] values = (long[]) column;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int row = 0; row < rows; row++) {
+                // Version 4 and IETF variant bits
+                values[row * 2] = (random.nextLong() & ~0xf000L) | 0x4000L;
+                values[row * 2 + 1] = (random.nextLong() & ~(0xcL << 60)) | (0x8L << 60);
+            }
+        }
+
+        private java.util.UUID valueAt(Object column, int row) {
+            long[] values = (long[]) column;
+            return new java.util.UUID(values[row * 2], values[row * 2 + 1]);
+        }
+
+        @Override
+        void bind(PreparedStatement ps, int parameterIndex, Object column, int row) throws SQLException {
+            ps.setObject(parameterIndex, valueAt(column, row));
+        }
+
+        @Override
+        Array toArray(Connection connection, Object column) throws SQLException {
+            java.util.UUID[] values = new java.util.UUID[((long[]) column).length / 2];
+            for (int row = 0; row < values.length; row++) {
+                values[row] = valueAt(column, row);
+            }
+            return connection.createArrayOf(getArrayType(), values);
+        }
+
+        @Override
+        void encode(CopyBuffer buffer, Object column, int row) {
+            buffer.append(valueAt(column, row).toString());
+        }
+    },
+    TIMESTAMPTZ("timestamptz") {
+        private static final long RANGE_MICROS = TimeUnit.DAYS.toMicros(365);
+
+        @Override
+        public String ddl(int size) {
+            return "timestamptz";
+        }
+
+        @Override
+        Object newColumn(int rows) {
+            return new long[rows];
+        }
+
+        @Override
+        void generate(Object column, int rows, int size, RandomData.Entropy entropy) {
+            long[] values = (long[]) column;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long nowMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+            for (int row = 0; row < rows; row++) {
+                values[row] = nowMicros - random.nextLong(RANGE_MICROS);
+            }
+        }
+
+        private OffsetDateTime valueAt(Object column, int row) {
+            return OffsetDateTime.ofInstant(Instant.EPOCH.plus(((long[]) column)[row], ChronoUnit.MICROS),
+                    ZoneOffset.UTC);
+        }
+
+        @Override
+        void bind(PreparedStatement ps, int parameterIndex, Object column, int row) throws SQLException {
+            ps.setObject(parameterIndex, valueAt(column, row));
+        }
+
+        @Override
+        Array toArray(Connection connection, Object column) throws SQLException {
+            String[] values = new String[((long[]) column).length];
+            for (int row = 0; row < values.length; row++) {
+                values[row] = valueAt(column, row).toString();
+            }
+            return connection.createArrayOf(getArrayType(), values);
+        }
+
+        @Override
+        void encode(CopyBuffer buffer, Object column, int row) {
+            buffer.append(valueAt(column, row).toString());
+        }
+    },
+    DECIMAL("numeric") {
+        private static final int SCALE = 2;
+
+        private static final long BOUND = 10_000_000_000_000_000L;
+
+        @Override
+        public String ddl(int size) {
+            return "decimal(18,%d)".formatted(SCALE);
+        }
+
+        @Override
+        Object newColumn(int rows) {
+            return new long[rows];
+        }
+
+        @Override
+        void generate(Object column, int rows, int size, RandomData.Entropy entropy) {
+            long[] values = (long[]) column;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int row = 0; row < rows; row++) {
+                values[row] = random.nextLong(-BOUND + 1, BOUND);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, int parameterIndex, Object column, int row) throws SQLException {
+            ps.setBigDecimal(parameterIndex, BigDecimal.valueOf(((long[]) column)[row], SCALE));
+        }
+
+        @Override
+        Array toArray(Connection connection, Object column) throws SQLException {
+            long[] unscaled = (long[]) column;
+            BigDecimal[] values = new BigDecimal[unscaled.length];
+            for (int row = 0; row < values.length; row++) {
+                values[row] = BigDecimal.valueOf(unscaled[row], SCALE);
+            }
+            return connection.createArrayOf(getArrayType(), values);
+        }
+
+        @Override
+        void encode(CopyBuffer buffer, Object column, int row) {
+            buffer.appendDecimal(((long[]) column)[row], SCALE);
+        }
+    },
+    BYTES("bytea") {
+        @Override
+        public String ddl(int size) {
+            return "bytes";
+        }
+
+        @Override
+        Object newColumn(int rows) {
+            return new byte[rows][];
+        }
+
+        @Override
+        void generate(Object column, int rows, int size, RandomData.Entropy entropy) {
+            byte[][] values = (byte[][]) column;
+            for (int row = 0; row < rows; row++) {
+                values[row] = RandomData.randomBytes(size, entropy);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, int parameterIndex, Object column, int row) throws SQLException {
+            ps.setBytes(parameterIndex, ((byte[][]) column)[row]);
+        }
+
+        @Override
+        Array toArray(Connection connection, Object column) throws SQLException {
+            return connection.unwrap(PGConnection.class).createArrayOf(getArrayType(), column);
+        }
+
+        @Override
+        void encode(CopyBuffer buffer, Object column, int row) {
+            buffer.appendHex(((byte[][]) column)[row]);
+        }
+    },
+    JSONB("jsonb") {
+        @Override
+        public String ddl(int size) {
+            return "jsonb";
+        }
+
+        @Override
+        Object newColumn(int rows) {
+            return new String[rows];
+        }
+
+        @Override
+        void generate(Object column, int rows, int size, RandomData.Entropy entropy) {
+            String[] values = (String[]) column;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int row = 0; row < rows; row++) {
+                values[row] = "{\"n\":" + random.nextInt(1_000_000)
+                              + ",\"s\":\"" + RandomData.randomString(size, entropy) + "\"}";
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, int parameterIndex, Object column, int row) throws SQLException {
+            ps.setObject(parameterIndex, ((String[]) column)[row], Types.OTHER);
+        }
+
+        @Override
+        Array toArray(Connection connection, Object column) throws SQLException {
+            return connection.createArrayOf(getArrayType(), (String[]) column);
+        }
+
+        @Override
+        void encode(CopyBuffer buffer, Object column, int row) {
+            buffer.append(((String[]) column)[row]);
+        }
+    },
+    VARCHAR("varchar") {
+        @Override
+        public String ddl(int size) {
+            return "varchar(%d)".formatted(size);
+        }
+
+        @Override
+        Object newColumn(int rows) {
+            return new String[rows];
+        }
+
+        @Override
+        void generate(Object column, int rows, int size, RandomData.Entropy entropy) {
+            String[] values = (String[]) column;
+            for (int row = 0; row < rows; row++) {
+                values[row] = RandomData.randomString(size, entropy);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, int parameterIndex, Object column, int row) throws SQLException {
+            ps.setString(parameterIndex, ((String[]) column)[row]);
+        }
+
+        @Override
+        Array toArray(Connection connection, Object column) throws SQLException {
+            return connection.createArrayOf(getArrayType(), (String[]) column);
+        }
+
+        @Override
+        void encode(CopyBuffer buffer, Object column, int row) {
+            buffer.append(((String[]) column)[row]);
+        }
+    };
+
+    /**
+     * Resolve a column type by name or alias, as used in schema specs.
+     *
+     * @param name the type name
+     * @return the column type
+     */
+    public static ColumnType parse(String name) {
+        return switch (name.toLowerCase(Locale.ENGLISH)) {
+            case "int8", "int", "bigint" -> INT8;
+            case "uuid" -> UUID;
+            case "ts", "timestamp", "timestamptz" -> TIMESTAMPTZ;
+            case "decimal", "numeric" -> DECIMAL;
+            case "bytes", "bytea" -> BYTES;
+            case "json", "jsonb" -> JSONB;
+            case "varchar", "string", "text" -> VARCHAR;
+            default -> throw new IllegalArgumentException("Unknown column type: " + name);
+        };
+    }
+
+    private final String arrayType;
+
+    ColumnType(String arrayType) {
+        this.arrayType = arrayType;
+    }
+
+    /**
+     * @return the element type name used for arrays of this type
+     */
+    public String getArrayType() {
+        return arrayType;
+    }
+
+    /**
+     * @param size the column size, if applicable
+     * @return the SQL type for the column definition
+     */
+    public abstract String ddl(int size);
+
+    abstract Object newColumn(int rows);
+
+    abstract void generate(Object column, int rows, int size, RandomData.Entropy entropy);
+
+    abstract void bind(PreparedStatement ps, int parameterIndex, Object column, int row) throws SQLException;
+
+    abstract Array toArray(Connection connection, Object column) throws SQLException;
+
+    abstract void encode(CopyBuffer buffer, Object column, int row);
+}
@@ -0,0 +1,210 @@
+package io.cockroachdb.batch.schema;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.cockroachdb.batch.util.KeyDistribution;
+
+/**
+ * Client-side primary key generator for a key strategy, shared by all
+ * threads generating batches for a table. Random keys only use thread-local
+ * state while sequential keys are handed out in blocks from a shared counter,
+ * so threads only touch shared state once per block rather than per key.
+ * Sequential keys are therefore ordered within each thread's block, which
+ * is enough to concentrate writes on the last range.
+ * <p>
+ * Sequential keys continue after the highest key found in the table at
+ * preparation, and all tasks writing to a table share its generator, so
+ * tasks and repeated runs against the same table don't collide. Separate
+ * processes each keep their own counter and collide on the same table.
+ * <p>
+ * Alternatively, int8 keys are drawn from a fixed keyspace by a key distribution
+ * for updating existing rows. Keys are then distinct within each batch, since a
+ * single statement can't update the same row twice.
+ *
+ * @author Kai Niemi
+ */
+public class KeyGenerator {
+    private static final Map<String, KeyGenerator> GENERATORS = new ConcurrentHashMap<>();
+
+    /**
+     * Get or create the shared key generator of a table.
+     *
+     * @param tableName the table name
+     * @param strategy  the table's key strategy
+     * @param tenants   the number of tenants (tenant strategy only), used when created
+     * @return the key generator
+     */
+    public static KeyGenerator forTable(String tableName, KeyStrategy strategy, int tenants) {
+        KeyGenerator generator = GENERATORS.computeIfAbsent(tableName,
+                k -> new KeyGenerator(strategy, tenants));
+        if (generator.strategy != strategy) {
+            throw new IllegalArgumentException("Key strategy %s doesn't match %s used for table %s"
+                    .formatted(strategy, generator.strategy, tableName));
+        }
+        return generator;
+    }
+
+    private static final int BLOCK_SIZE = 1024;
+
+    private static final int MAX_DRAWS = 16;
+
+    private final KeyStrategy strategy;
+
+    private final int tenants;
+
+    private final KeyDistribution distribution;
+
+    private final long keyspace;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Next key and end of block per thread
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * @param strategy the key strategy
+     * @param tenants  the number of tenants (tenant strategy only)
+     */
+    public KeyGenerator(KeyStrategy strategy, int tenants) {
+        if (tenants <= 0) {
+            throw new IllegalArgumentException("tenants must be > 0");
+        }
+        this.strategy = strategy;
+        this.tenants = tenants;
+        this.distribution = null;
+        this.keyspace = 0;
+    }
+
+    /**
+     * @param strategy     the key strategy, sequential or hash-sharded
+     * @param distribution the distribution of keys
+     * @param keyspace     the number of keys, numbered from 1
+     */
+    public KeyGenerator(KeyStrategy strategy, KeyDistribution distribution, long keyspace) {
+        if (strategy != KeyStrategy.SEQUENTIAL && strategy != KeyStrategy.HASH_SHARDED) {
+            throw new IllegalArgumentException("Key strategy %s doesn't support a fixed keyspace"
+                    .formatted(strategy));
+        }
+        if (keyspace <= 0) {
+            throw new IllegalArgumentException("keyspace must be > 0");
+        }
+        this.strategy = strategy;
+        this.tenants = 1;
+        this.distribution = distribution;
+        this.keyspace = keyspace;
+    }
+
+    public KeyStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return true if keys are handed out from a sequence, which then needs seeding
+     */
+    public boolean isSequential() {
+        return distribution == null
+                && (strategy == KeyStrategy.SEQUENTIAL
+                || strategy == KeyStrategy.HASH_SHARDED
+                || strategy == KeyStrategy.TENANT);
+    }
+
+    /**
+     * Continue the sequence after a key already in use, unless already past it.
+     *
+     * @param maxKey the highest key in use
+     */
+    public void seed(long maxKey) {
+        sequence.accumulateAndGet(maxKey, Math::max);
+    }
+
+    /**
+     * @return number of key columns generated, zero if keys are generated server-side
+     */
+    public int getColumnCount() {
+        return strategy.getKeyColumns().size();
+    }
+
+    /**
+     * Generate keys into the leading key columns of a batch.
+     *
+     * @param columns the batch columns, key columns first
+     * @param rows    the number of rows
+     */
+    void generate(Object[] columns, int rows) {
+        switch (strategy) {
+            case ROWID -> {
+            }
+            case SEQUENTIAL, HASH_SHARDED -> {
+                if (distribution != null) {
+                    nextDistinct((long[]) columns[0], rows);
+                } else {
+                    nextSequence((long[]) columns[0], rows);
+                }
+            }
+            case UUID4 -> uuid4((long[]) columns[0], rows);
+            case UUID7 -> uuid7((long[]) columns[0], rows);
+            case TENANT -> {
+                long[] tenantIds = (long[]) columns[0];
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int row = 0; row < rows; row++) {
+                    tenantIds[row] = random.nextInt(tenants);
+                }
+                nextSequence((long[]) columns[1], rows);
+            }
+        }
+    }
+
+    private void nextSequence(long[] values, int rows) {
+        long[] b = block.get();
+        for (int row = 0; row < rows; row++) {
+            if (b[0] == b[1]) {
+                b[0] = sequence.getAndAdd(BLOCK_SIZE) + 1;
+                b[1] = b[0] + BLOCK_SIZE;
+            }
+            values[row] = b[0]++;
+        }
+    }
+
+    private void nextDistinct(long[] values, int rows) {
+        if (rows > keyspace) {
+            throw new IllegalArgumentException("Batch size %d exceeds keyspace %d".formatted(rows, keyspace));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Set<Long> keys = new HashSet<>(rows * 2);
+        for (int row = 0; row < rows; row++) {
+            long key = distribution.next(random);
+            // Redraw duplicates a few times to keep the distribution, then probe for a free key
+            for (int draw = 1; draw < MAX_DRAWS && keys.contains(key); draw++) {
+                key = distribution.next(random);
+            }
+            while (!keys.add(key)) {
+                key = (key + 1) % keyspace;
+            }
+            values[row] = key + 1;
+        }
+    }
+
+    private static void uuid4(long[] values, int rows) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int row = 0; row < rows; row++) {
+            // Version 4 and IETF variant bits
+            values[row * 2] = (random.nextLong() & ~0xf000L) | 0x4000L;
+            values[row * 2 + 1] = (random.nextLong() & ~(0xcL << 60)) | (0x8L << 60);
+        }
+    }
+
+    private static void uuid7(long[] values, int rows) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long millis = System.currentTimeMillis();
+        for (int row = 0; row < rows; row++) {
+            // 48 bit unix epoch millis, version 7, 12 random bits, IETF variant and 62 random bits
+            values[row * 2] = (millis << 16) | 0x7000L | (random.nextLong() & 0xfffL);
+            values[row * 2 + 1] = (random.nextLong() & ~(0xcL << 60)) | (0x8L << 60);
+        }
+    }
+}
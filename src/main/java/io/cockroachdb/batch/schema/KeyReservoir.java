@@ -0,0 +1,166 @@
+package io.cockroachdb.batch.schema;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size uniform sample of the primary keys written to a table, for
+ * read tasks to look up rows written by insert tasks in the same process.
+ * Writers offer the keys of each written batch and readers sample keys at
+ * random, both without locking.
+ * <p>
+ * Keys are kept in a flat array of longs, one long per int8 key column and
+ * two per uuid column, using reservoir sampling (Algorithm R) once full so
+ * that each written key is equally likely to be kept. Concurrent writes may
+ * occasionally tear a multi-column key, which only results in a lookup miss.
+ *
+ * @author Kai Niemi
+ */
+public class KeyReservoir {
+    private static final Map<String, KeyReservoir> RESERVOIRS = new ConcurrentHashMap<>();
+
+    /**
+     * Get or create the shared reservoir of a table.
+     *
+     * @param tableName the table name
+     * @param strategy  the table's key strategy
+     * @param capacity  max number of keys, used when created
+     * @return the reservoir
+     */
+    public static KeyReservoir forTable(String tableName, KeyStrategy strategy, int capacity) {
+        KeyReservoir reservoir = RESERVOIRS.computeIfAbsent(tableName,
+                k -> new KeyReservoir(strategy, capacity));
+        if (!reservoir.getKeyColumns().equals(strategy.getPrimaryKeyColumns().stream()
+                .map(ColumnSpec::getType).toList())) {
+            throw new IllegalArgumentException("Key strategy %s doesn't match %s used for table %s"
+                    .formatted(strategy, reservoir.strategy, tableName));
+        }
+        return reservoir;
+    }
+
+    private final KeyStrategy strategy;
+
+    private final List<ColumnType> keyColumns;
+
+    private final int width;
+
+    private final int capacity;
+
+    private final long[] keys;
+
+    private final AtomicLong offered = new AtomicLong();
+
+    private KeyReservoir(KeyStrategy strategy, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Reservoir capacity must be > 0");
+        }
+        this.strategy = strategy;
+        this.keyColumns = strategy.getPrimaryKeyColumns().stream().map(ColumnSpec::getType).toList();
+        this.width = keyColumns.stream().mapToInt(type -> type == ColumnType.UUID ? 2 : 1).sum();
+        this.capacity = capacity;
+        this.keys = new long[capacity * width];
+    }
+
+    public KeyStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return the key column types in index order
+     */
+    public List<ColumnType> getKeyColumns() {
+        return keyColumns;
+    }
+
+    /**
+     * @return number of longs per key
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return number of keys held
+     */
+    public int size() {
+        return (int) Math.min(capacity, offered.get());
+    }
+
+    public boolean isEmpty() {
+        return offered.get() == 0;
+    }
+
+    /**
+     * @return total number of keys offered
+     */
+    public long getOffered() {
+        return offered.get();
+    }
+
+    /**
+     * Offer the client-generated keys of a written batch.
+     *
+     * @param batch the batch with leading key columns
+     */
+    public void offer(ColumnBatch batch) {
+        if (batch.getSchema().getKeyCount() == 0) {
+            return;
+        }
+
+        final int rows = batch.getRows();
+        final long base = offered.getAndAdd(rows);
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int row = 0; row < rows; row++) {
+            long n = base + row;
+            long slot = n < capacity ? n : random.nextLong(n + 1);
+            if (slot < capacity) {
+                int offset = (int) slot * width;
+                for (int col = 0; col < keyColumns.size(); col++) {
+                    long[] values = (long[]) batch.getColumn(col);
+                    if (keyColumns.get(col) == ColumnType.UUID) {
+                        keys[offset++] = values[row * 2];
+                        keys[offset++] = values[row * 2 + 1];
+                    } else {
+                        keys[offset++] = values[row];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Offer a single key, such as one read back from the table.
+     *
+     * @param key the key of length {@link #getWidth()}
+     */
+    public void offer(long[] key) {
+        long n = offered.getAndIncrement();
+        long slot = n < capacity ? n : ThreadLocalRandom.current().nextLong(n + 1);
+        if (slot < capacity) {
+            System.arraycopy(key, 0, keys, (int) slot * width, width);
+        }
+    }
+
+    /**
+     * Sample keys at random.
+     *
+     * @param dest the destination of length count * {@link #getWidth()}
+     * @param count the number of keys
+     * @return false if empty
+     */
+    public boolean sample(long[] dest, int count) {
+        int size = size();
+        if (size == 0) {
+            return false;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(keys, random.nextInt(size) * width, dest, i * width, width);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package io.cockroachdb.batch.schema;
+
+import java.util.List;
+
+/**
+ * Primary key strategies with different write distribution across ranges,
+ * for comparing how well each scales with concurrency. Keys are either
+ * generated server-side or client-side by a {@link KeyGenerator}.
+ *
+ * @author Kai Niemi
+ */
+public enum KeyStrategy {
+    /**
+     * Server-generated unordered_unique_rowid(), spread across ranges (default).
+     */
+    ROWID("rowid"),
+    /**
+     * Client-generated sequential int8 keys, all writes hitting the last range.
+     */
+    SEQUENTIAL("sequential"),
+    /**
+     * Client-generated random version 4 UUIDs, spread across ranges.
+     */
+    UUID4("uuid4"),
+    /**
+     * Client-generated time-ordered version 7 UUIDs, mostly hitting the last range.
+     */
+    UUID7("uuid7"),
+    /**
+     * Client-generated sequential int8 keys in a hash-sharded primary key index.
+     */
+    HASH_SHARDED("hash-sharded"),
+    /**
+     * Composite key of a random tenant id and a sequential int8 id, one hotspot per tenant.
+     */
+    TENANT("tenant");
+
+    public static KeyStrategy parse(String name) {
+        for (KeyStrategy strategy : values()) {
+            if (strategy.label.equalsIgnoreCase(name) || strategy.name().equalsIgnoreCase(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown key strategy: " + name);
+    }
+
+    private final String label;
+
+    KeyStrategy(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the client-generated key columns in insert order, empty if generated server-side
+     */
+    public List<ColumnSpec> getKeyColumns() {
+        return switch (this) {
+            case ROWID -> List.of();
+            case SEQUENTIAL, HASH_SHARDED -> List.of(new ColumnSpec("id", ColumnType.INT8, 0));
+            case UUID4, UUID7 -> List.of(new ColumnSpec("id", ColumnType.UUID, 0));
+            case TENANT -> List.of(new ColumnSpec("tenant_id", ColumnType.INT8, 0),
+                    new ColumnSpec("id", ColumnType.INT8, 0));
+        };
+    }
+
+    /**
+     * @return the primary key columns in index order, including server-generated keys
+     */
+    public List<ColumnSpec> getPrimaryKeyColumns() {
+        return this == ROWID ? List.of(new ColumnSpec("id", ColumnType.INT8, 0)) : getKeyColumns();
+    }
+
+    /**
+     * @param shardBuckets the number of hash shard buckets (hash-sharded only)
+     * @return the key column definitions including the primary key constraint
+     */
+    public String ddl(int shardBuckets) {
+        return switch (this) {
+            case ROWID -> "id int not null primary key default unordered_unique_rowid()";
+            case SEQUENTIAL -> "id int8 not null primary key";
+            case UUID4, UUID7 -> "id uuid not null primary key";
+            case HASH_SHARDED -> "id int8 not null primary key using hash with (bucket_count = %d)"
+                    .formatted(shardBuckets);
+            case TENANT -> "tenant_id int8 not null, id int8 not null, primary key (tenant_id, id)";
+        };
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
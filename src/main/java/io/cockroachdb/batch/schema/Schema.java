@@ -0,0 +1,104 @@
+package io.cockroachdb.batch.schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An ordered list of typed columns, excluding the primary key.
+ * Parsed from a compact spec such as {@code int8,uuid,ts,varchar(64)x5,bytes(256)}
+ * where an optional {@code (n)} is the column size and {@code xN} repeats the column.
+ *
+ * @author Kai Niemi
+ */
+public class Schema {
+    private static final Pattern COLUMN_PATTERN
+            = Pattern.compile("^\\s*([a-zA-Z0-9]+)\\s*(?:\\((\\d+)\\))?\\s*(?:[xX](\\d+))?\\s*$");
+
+    public static Schema parse(String spec, int defaultSize) {
+        List<ColumnSpec> columns = new ArrayList<>();
+
+        for (String token : spec.split(",")) {
+            Matcher matcher = COLUMN_PATTERN.matcher(token);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid column spec: " + token);
+            }
+            ColumnType type = ColumnType.parse(matcher.group(1));
+            int size = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : defaultSize;
+            int count = matcher.group(3) != null ? Integer.parseInt(matcher.group(3)) : 1;
+
+            for (int i = 0; i < count; i++) {
+                columns.add(new ColumnSpec("col%d".formatted(columns.size() + 1), type, size));
+            }
+        }
+
+        return new Schema(columns);
+    }
+
+    /**
+     * @return a schema of varchar columns of equal size
+     */
+    public static Schema ofVarchar(int numCols, int colSize) {
+        List<ColumnSpec> columns = new ArrayList<>();
+        for (int i = 1; i <= numCols; i++) {
+            columns.add(new ColumnSpec("col%d".formatted(i), ColumnType.VARCHAR, colSize));
+        }
+        return new Schema(columns);
+    }
+
+    private final List<ColumnSpec> columns;
+
+    private final int keyCount;
+
+    private Schema(List<ColumnSpec> columns) {
+        this(columns, 0);
+    }
+
+    private Schema(List<ColumnSpec> columns, int keyCount) {
+        if (columns.size() <= keyCount) {
+            throw new IllegalArgumentException("Schema must have at least one column");
+        }
+        this.columns = Collections.unmodifiableList(columns);
+        this.keyCount = keyCount;
+    }
+
+    /**
+     * @param keyColumns client-generated primary key columns
+     * @return a schema with the key columns prepended, for inserting keys along with the values
+     */
+    public Schema withKeyColumns(List<ColumnSpec> keyColumns) {
+        List<ColumnSpec> all = new ArrayList<>(keyColumns);
+        all.addAll(columns.subList(keyCount, columns.size()));
+        return new Schema(all, keyColumns.size());
+    }
+
+    /**
+     * @return number of leading primary key columns, zero if keys are generated server-side
+     */
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    public List<ColumnSpec> getColumns() {
+        return columns;
+    }
+
+    public ColumnSpec getColumn(int col) {
+        return columns.get(col);
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    public List<String> getColumnNames() {
+        return columns.stream().map(ColumnSpec::getName).toList();
+    }
+
+    @Override
+    public String toString() {
+        return columns.toString();
+    }
+}
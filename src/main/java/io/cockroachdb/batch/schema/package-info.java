@@ -0,0 +1,6 @@
+/**
+ * Typed column schemas with type-specialized value generators and binders.
+ *
+ * @author Kai Niemi
+ */
+package io.cockroachdb.batch.schema;
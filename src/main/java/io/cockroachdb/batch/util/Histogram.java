@@ -0,0 +1,313 @@
+package io.cockroachdb.batch.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, fixed-memory latency histogram with log-linear buckets
+ * in the spirit of HdrHistogram. Values are recorded in nanoseconds with
+ * a relative precision of ~1.5% (64 linear sub-buckets per power of two)
+ * up to a max trackable value of 2^40 ns (~18 min), beyond which values
+ * are clamped.
+ * <p>
+ * Recording is O(1) and allocation free. Reading is done on demand by
+ * scanning the bucket counts, which is cheap enough for periodic reports.
+ *
+ * @author Kai Niemi
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 7;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    private static final int MAX_VALUE_BITS = 40;
+
+    public static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    public static final int BUCKET_COUNT = SUB_BUCKET_COUNT
+                                           + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) Math.max(0, value);
+        }
+        value = Math.min(value, MAX_TRACKABLE_VALUE);
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exp - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT
+               + (exp - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT
+               + (int) ((value >>> shift) - SUB_BUCKET_HALF_COUNT);
+    }
+
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int exp = offset / SUB_BUCKET_HALF_COUNT + SUB_BUCKET_BITS;
+        long mantissa = offset % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return mantissa << (exp - (SUB_BUCKET_BITS - 1));
+    }
+
+    static long highestValueAt(int index) {
+        return index + 1 < BUCKET_COUNT ? lowestValueAt(index + 1) - 1 : MAX_TRACKABLE_VALUE;
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    private final LongAdder totalCount = new LongAdder();
+
+    private final LongAdder totalSum = new LongAdder();
+
+    private final AtomicLong minValue = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong maxValue = new AtomicLong(0);
+
+    /**
+     * Record a value in nanoseconds.
+     *
+     * @param value the value, negative values are recorded as zero
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalSum.add(value);
+
+        long min = minValue.get();
+        while (value < min && !minValue.compareAndSet(min, value)) {
+            min = minValue.get();
+        }
+        long max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+    }
+
+    /**
+     * Add all recorded values of another histogram to this histogram.
+     * The result is exact in terms of bucket counts.
+     *
+     * @param other the histogram to add
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = other.counts.get(i);
+            if (c > 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        totalCount.add(other.getCount());
+        totalSum.add(other.totalSum.sum());
+
+        long otherMin = other.minValue.get();
+        long min = minValue.get();
+        while (otherMin < min && !minValue.compareAndSet(min, otherMin)) {
+            min = minValue.get();
+        }
+        long otherMax = other.maxValue.get();
+        long max = maxValue.get();
+        while (otherMax > max && !maxValue.compareAndSet(max, otherMax)) {
+            max = maxValue.get();
+        }
+    }
+
+    /**
+     * Reset all counts. Not atomic with respect to concurrent recording.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalSum.reset();
+        minValue.set(Long.MAX_VALUE);
+        maxValue.set(0);
+    }
+
+    /**
+     * Compute the values recorded since an earlier copy of this histogram.
+     * Bucket counts are exact while min and max of the result are the
+     * bucket-equivalent bounds of the lowest and highest non-empty bucket.
+     *
+     * @param earlier an earlier copy of this histogram
+     * @return a new histogram with the difference
+     */
+    public Histogram delta(Histogram earlier) {
+        Histogram h = new Histogram();
+        long count = 0;
+        int lowest = -1;
+        int highest = -1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = counts.get(i) - earlier.counts.get(i);
+            if (c > 0) {
+                h.counts.set(i, c);
+                count += c;
+                if (lowest < 0) {
+                    lowest = i;
+                }
+                highest = i;
+            }
+        }
+        if (count > 0) {
+            h.totalCount.add(count);
+            h.totalSum.add(Math.max(0, getSum() - earlier.getSum()));
+            h.minValue.set(Math.max(lowestValueAt(lowest), getMin()));
+            h.maxValue.set(Math.min(highestValueAt(highest), getMax()));
+        }
+        return h;
+    }
+
+    /**
+     * Write the histogram in a compact sparse form, only non-empty buckets
+     * are written as index and count pairs.
+     *
+     * @param out the output to write to
+     * @throws IOException on write errors
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        int buckets = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts.get(i) > 0) {
+                buckets++;
+            }
+        }
+        out.writeInt(buckets);
+        for (int i = 0; i < BUCKET_COUNT && buckets > 0; i++) {
+            long c = counts.get(i);
+            if (c > 0) {
+                out.writeShort(i);
+                out.writeLong(c);
+                buckets--;
+            }
+        }
+        out.writeLong(getSum());
+        out.writeLong(getMin());
+        out.writeLong(getMax());
+    }
+
+    /**
+     * Read a histogram written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return a new histogram
+     * @throws IOException on read errors or malformed input
+     */
+    public static Histogram readFrom(DataInput in) throws IOException {
+        Histogram h = new Histogram();
+        int buckets = in.readInt();
+        if (buckets < 0 || buckets > BUCKET_COUNT) {
+            throw new IOException("Invalid histogram bucket count: " + buckets);
+        }
+        long count = 0;
+        for (int b = 0; b < buckets; b++) {
+            int i = in.readUnsignedShort();
+            if (i >= BUCKET_COUNT) {
+                throw new IOException("Invalid histogram bucket index: " + i);
+            }
+            long c = in.readLong();
+            h.counts.addAndGet(i, c);
+            count += c;
+        }
+        h.totalCount.add(count);
+        h.totalSum.add(in.readLong());
+        long min = in.readLong();
+        long max = in.readLong();
+        if (count > 0) {
+            h.minValue.set(min);
+            h.maxValue.set(max);
+        }
+        return h;
+    }
+
+    public Histogram copy() {
+        Histogram h = new Histogram();
+        h.add(this);
+        return h;
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getCountAt(int index) {
+        return counts.get(index);
+    }
+
+    public long getMin() {
+        long min = minValue.get();
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count > 0 ? (double) totalSum.sum() / count : 0;
+    }
+
+    public long getSum() {
+        return totalSum.sum();
+    }
+
+    /**
+     * Compute cumulative counts of values at or below each of a set of
+     * boundaries in a single pass, such as for exporting coarse buckets.
+     * Counts are bucket-equivalent, a value in the same bucket as a boundary
+     * is counted as being at or below it.
+     *
+     * @param boundaries the boundary values in nanos in ascending order
+     * @return the cumulative count per boundary
+     */
+    public long[] getCountsAtOrBelow(long[] boundaries) {
+        long[] result = new long[boundaries.length];
+        long running = 0;
+        int i = 0;
+        for (int b = 0; b < boundaries.length; b++) {
+            int last = indexOf(boundaries[b]);
+            for (; i <= last; i++) {
+                running += counts.get(i);
+            }
+            result[b] = running;
+        }
+        return result;
+    }
+
+    /**
+     * Compute the value at a given percentile by scanning the buckets.
+     *
+     * @param percentile the percentile in range [0, 1]
+     * @return the highest equivalent value of the bucket containing the percentile
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException(">=0 N <=1");
+        }
+
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long running = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            running += counts.get(i);
+            if (running >= rank) {
+                return Math.min(highestValueAt(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
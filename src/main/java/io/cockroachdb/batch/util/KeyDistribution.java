@@ -0,0 +1,75 @@
+package io.cockroachdb.batch.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of keys drawn from a fixed keyspace, for controlling how
+ * concentrated writes are on a small set of hot keys. All distributions
+ * are stateless apart from the caller's random source and constant time
+ * per key, so they can be shared by any number of threads.
+ *
+ * @author Kai Niemi
+ */
+@FunctionalInterface
+public interface KeyDistribution {
+    // Prime multiplier for scattering, coprime with any keyspace below it
+    long SCATTER_PRIME = 1_000_000_007L;
+
+    /**
+     * @param keyspace number of keys
+     * @return keys with equal probability
+     */
+    static KeyDistribution uniform(long keyspace) {
+        Assert.isTrue(keyspace > 0, "keyspace must be > 0");
+        return random -> random.nextLong(keyspace);
+    }
+
+    /**
+     * @param keyspace number of keys
+     * @param skew     the Zipf exponent, where 0 is uniform and 1 or above is highly skewed
+     * @return keys with probability decreasing by rank, key 0 being the most frequent
+     */
+    static KeyDistribution zipfian(long keyspace, double skew) {
+        Assert.isTrue(skew >= 0, "skew must be >= 0");
+        return skew == 0 ? uniform(keyspace) : new ZipfianDistribution(keyspace, skew);
+    }
+
+    /**
+     * @param keyspace number of keys
+     * @param hotKeys  fraction of keys that are hot, starting from key 0
+     * @param hotOps   fraction of draws hitting the hot keys
+     * @return keys uniformly distributed within the hot and cold sets
+     */
+    static KeyDistribution hotspot(long keyspace, double hotKeys, double hotOps) {
+        Assert.isTrue(keyspace > 0, "keyspace must be > 0");
+        Assert.isTrue(hotKeys > 0 && hotKeys < 1, "hotKeys must be > 0 and < 1");
+        Assert.isTrue(hotOps >= 0 && hotOps <= 1, "hotOps must be >= 0 and <= 1");
+
+        final long hot = Math.max(1, (long) (keyspace * hotKeys));
+        final long cold = keyspace - hot;
+
+        return random -> cold == 0 || random.nextDouble() < hotOps
+                ? random.nextLong(hot)
+                : hot + random.nextLong(cold);
+    }
+
+    /**
+     * Scatter the keys of a distribution across the keyspace by a bijective
+     * multiplicative permutation, so that hot keys are not adjacent and thereby
+     * not all in the same range.
+     *
+     * @param distribution the distribution to scatter
+     * @param keyspace     number of keys
+     * @return keys with the same frequencies but permuted
+     */
+    static KeyDistribution scatter(KeyDistribution distribution, long keyspace) {
+        Assert.isTrue(keyspace < SCATTER_PRIME, "keyspace must be < " + SCATTER_PRIME);
+        return random -> Math.floorMod(distribution.next(random) * SCATTER_PRIME, keyspace);
+    }
+
+    /**
+     * @param random the random source of the calling thread
+     * @return the next key, from zero (inclusive) to the keyspace size (exclusive)
+     */
+    long next(ThreadLocalRandom random);
+}
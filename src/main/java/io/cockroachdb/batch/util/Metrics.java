@@ -2,27 +2,43 @@ package io.cockroachdb.batch.util;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A collector of method call metrics with aggregation functions.
  * Tracks the outcome of invocations and execution time percentiles
- * by periodic sampling.
+ * using lock-free histograms, one cumulative and one rolling window.
+ * Recording is O(1) and allocation free while derived values such as
+ * percentiles are computed on demand when read.
  *
  * @author Kai Niemi
  */
 public class Metrics {
+    private static final long REFRESH_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
     public static Metrics empty() {
         return new Metrics();
     }
 
     public static Metrics copy(Metrics from) {
         Metrics m = new Metrics();
+        m.frozen = true;
         m.updateTime = from.updateTime;
-        m.success = from.getSuccess();
-        m.transientFail = from.getTransientFail();
-        m.nonTransientFail = from.getNonTransientFail();
+        m.executionTimeSeconds = from.getExecutionTimeSeconds();
+        m.cumulative.add(from.cumulative);
+        m.frozenWindow = from.getWindowHistogram();
+        m.serviceCumulative.add(from.serviceCumulative);
+        m.frozenServiceWindow = from.getServiceWindowHistogram();
+        m.retryDelay.add(from.retryDelay);
+        m.backlog.set(from.getBacklog());
+        m.inFlight.set(from.getInFlight());
+        m.rows.add(from.getRows());
+        m.success.add(from.getSuccess());
+        m.transientFail.add(from.getTransientFail());
+        m.nonTransientFail.add(from.getNonTransientFail());
         m.opsPerSec = from.getOpsPerSec();
         m.opsPerMin = from.getOpsPerMin();
         m.avgTime = from.getAvgTime();
@@ -36,28 +52,80 @@ public class Metrics {
         return m;
     }
 
-    private static double percentile(List<Long> sortedDurations, double percentile) {
-        if (percentile < 0 || percentile > 1) {
-            throw new IllegalArgumentException(">=0 N <=1");
-        }
-        if (!sortedDurations.isEmpty()) {
-            int index = (int) Math.ceil(percentile * sortedDurations.size());
-            return sortedDurations.get(index - 1);
-        }
-        return 0;
+    /**
+     * Aggregate a collection of metrics by merging their latency histograms,
+     * which gives exact percentiles over all recorded calls rather than an
+     * average of per-metric percentiles.
+     *
+     * @param metrics the metrics to merge
+     * @return frozen metrics representing the aggregate
+     */
+    public static Metrics aggregate(Collection<Metrics> metrics) {
+        Metrics m = new Metrics();
+        m.frozen = true;
+        m.frozenWindow = new Histogram();
+        m.frozenServiceWindow = new Histogram();
+
+        metrics.forEach(from -> {
+            m.cumulative.add(from.cumulative);
+            m.frozenWindow.add(from.getWindowHistogram());
+            m.serviceCumulative.add(from.serviceCumulative);
+            m.frozenServiceWindow.add(from.getServiceWindowHistogram());
+            m.retryDelay.add(from.retryDelay);
+            m.backlog.addAndGet(from.getBacklog());
+            m.inFlight.addAndGet(from.getInFlight());
+            m.rows.add(from.getRows());
+            m.success.add(from.getSuccess());
+            m.transientFail.add(from.getTransientFail());
+            m.nonTransientFail.add(from.getNonTransientFail());
+            m.opsPerSec += from.getOpsPerSec();
+            m.executionTimeSeconds = Math.max(m.executionTimeSeconds, from.getExecutionTimeSeconds());
+        });
+
+        m.opsPerMin = m.opsPerSec * 60;
+        m.derive(m.frozenWindow);
+        return m;
     }
 
-    private final LinkedList<Pair<Instant, Pair<Duration, Integer>>> timeSeries = new LinkedList<>();
+    private static double toMillis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private final Histogram cumulative = new Histogram();
+
+    private final RollingHistogram window = new RollingHistogram(60, TimeUnit.SECONDS);
+
+    private final Histogram serviceCumulative = new Histogram();
+
+    private final RollingHistogram serviceWindow = new RollingHistogram(60, TimeUnit.SECONDS);
+
+    private final Histogram retryDelay = new Histogram();
+
+    private final AtomicLong backlog = new AtomicLong();
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder success = new LongAdder();
+
+    private final LongAdder transientFail = new LongAdder();
+
+    private final LongAdder nonTransientFail = new LongAdder();
 
     private final Instant startTime = Instant.now();
 
     private Instant updateTime;
 
-    private int success;
+    private long refreshTime;
+
+    private boolean frozen;
+
+    private Histogram frozenWindow;
 
-    private int transientFail;
+    private Histogram frozenServiceWindow;
 
-    private int nonTransientFail;
+    private double executionTimeSeconds;
 
     private double opsPerSec;
 
@@ -79,142 +147,261 @@ public class Metrics {
 
     private double p999;
 
-    private final int samplePeriod = 120;
-
     Metrics() {
         this.updateTime = Instant.now();
     }
 
     public void markSuccess(Duration duration) {
-        success++;
-        update(duration);
+        markSuccess(duration.toNanos(), 0);
+    }
+
+    public void markSuccess(long durationNanos, int rowCount) {
+        success.increment();
+        rows.add(rowCount);
+        update(durationNanos);
     }
 
     public void markFail(Duration duration, boolean isTransient) {
+        markFail(duration.toNanos(), isTransient);
+    }
+
+    public void markFail(long durationNanos, boolean isTransient) {
         if (isTransient) {
-            transientFail++;
+            transientFail.increment();
         } else {
-            nonTransientFail++;
+            nonTransientFail.increment();
         }
-        update(duration);
+        update(durationNanos);
     }
 
-    private void update(Duration duration) {
-        updateTime = Instant.now();
+    /**
+     * Mark a successful call in open-loop mode where the response time is
+     * measured from the intended start time rather than the actual start.
+     *
+     * @param responseNanos time from intended start to completion
+     * @param serviceNanos time from actual start to completion
+     * @param rowCount number of rows processed
+     */
+    public void markSuccess(long responseNanos, long serviceNanos, int rowCount) {
+        markSuccess(responseNanos, rowCount);
+        updateServiceTime(serviceNanos);
+    }
 
-        // Purge items by time range
-        timeSeries.removeIf(item -> item.getFirst()
-                .isBefore(updateTime.minusSeconds(samplePeriod)));
-
-        timeSeries.add(Pair.of(updateTime, Pair.of(duration, success)));
-
-        // Latency percentiles and mean
-        {
-            List<Long> sortedMillis = timeSeries
-                    .stream()
-                    .map(p -> p.getSecond().getFirst())
-                    .toList()
-                    .stream()
-                    .mapToLong(Duration::toMillis)
-                    .sorted()
-                    .boxed()
-                    .toList();
-
-            p50 = percentile(sortedMillis, .5);
-            p90 = percentile(sortedMillis, .9);
-            p95 = percentile(sortedMillis, .95);
-            p99 = percentile(sortedMillis, .99);
-            p999 = percentile(sortedMillis, .999);
-
-            avgTime = sortedMillis
-                    .stream()
-                    .mapToDouble(value -> value)
-                    .average()
-                    .orElse(0);
-            minTime = sortedMillis
-                    .stream()
-                    .mapToDouble(value -> value)
-                    .min()
-                    .orElse(0);
-            maxTime = Math.max(maxTime, sortedMillis
-                    .stream()
-                    .mapToDouble(value -> value)
-                    .max()
-                    .orElse(0));
-        }
+    public void markFail(long responseNanos, long serviceNanos, boolean isTransient) {
+        markFail(responseNanos, isTransient);
+        updateServiceTime(serviceNanos);
+    }
 
-        // Ops per time unit
-        {
-            List<Instant> samples = timeSeries
-                    .stream()
-                    .map(Pair::getFirst)
-                    .filter(instant -> instant.isAfter(updateTime.minusSeconds(samplePeriod)))
-                    .toList();
+    /**
+     * Mark time spent backing off before a retry, kept apart from call latency.
+     *
+     * @param delayNanos the backoff delay including any wait on the retry budget
+     */
+    public void markRetryDelay(long delayNanos) {
+        retryDelay.record(delayNanos);
+    }
+
+    public void setBacklog(long backlog) {
+        this.backlog.set(backlog);
+    }
+
+    public void setInFlight(long inFlight) {
+        this.inFlight.set(inFlight);
+    }
+
+    private void updateServiceTime(long durationNanos) {
+        serviceCumulative.record(durationNanos);
+        serviceWindow.record(durationNanos);
+    }
 
-            Instant oldestTime = samples.stream()
-                    .findFirst()
-                    .orElse(updateTime);
+    private void update(long durationNanos) {
+        cumulative.record(durationNanos);
+        window.record(durationNanos);
+    }
 
-            opsPerSec = samples.size() /
-                        Math.max(1, Duration.between(oldestTime, updateTime).toMillis() / 1000.0);
+    /**
+     * Compute derived values from the histograms, at most
+     * once per refresh period. Only invoked on the read path.
+     */
+    private synchronized void refresh() {
+        if (frozen) {
+            return;
+        }
 
-            opsPerMin = opsPerSec * 60;
+        final long now = System.nanoTime();
+        if (refreshTime != 0 && now - refreshTime < REFRESH_PERIOD_NANOS) {
+            return;
         }
+        refreshTime = now;
+        updateTime = Instant.now();
+
+        Histogram h = window.snapshot();
+        derive(h);
+
+        // Ops per time unit
+        opsPerSec = h.getCount() / Math.max(1, window.getWindowSeconds());
+        opsPerMin = opsPerSec * 60;
+    }
+
+    /**
+     * Derive all latency values from the same histogram, so they cover the same time span.
+     * The summary totals read the cumulative histogram directly.
+     */
+    private void derive(Histogram h) {
+        // Latency percentiles, mean and range
+        p50 = toMillis(h.getValueAtPercentile(.5));
+        p90 = toMillis(h.getValueAtPercentile(.9));
+        p95 = toMillis(h.getValueAtPercentile(.95));
+        p99 = toMillis(h.getValueAtPercentile(.99));
+        p999 = toMillis(h.getValueAtPercentile(.999));
+
+        avgTime = toMillis(h.getMean());
+        minTime = toMillis(h.getMin());
+        maxTime = toMillis(h.getMax());
     }
 
     public double getExecutionTimeSeconds() {
+        if (frozen) {
+            return executionTimeSeconds;
+        }
         return Duration.between(startTime, Instant.now()).toMillis() / 1000.0;
     }
 
+    /**
+     * @return the cumulative latency histogram (nanos) since start, not to be modified
+     */
+    public Histogram getHistogram() {
+        return cumulative;
+    }
+
+    /**
+     * @return a copy of the latency histogram (nanos) of the rolling time window
+     */
+    public Histogram getWindowHistogram() {
+        if (frozen) {
+            return frozenWindow != null ? frozenWindow : new Histogram();
+        }
+        return window.snapshot();
+    }
+
+    /**
+     * @return the cumulative service time histogram (nanos), only recorded in open-loop mode
+     */
+    public Histogram getServiceTimeHistogram() {
+        return serviceCumulative;
+    }
+
+    /**
+     * @return a copy of the service time histogram (nanos) of the rolling time window
+     */
+    public Histogram getServiceWindowHistogram() {
+        if (frozen) {
+            return frozenServiceWindow != null ? frozenServiceWindow : new Histogram();
+        }
+        return serviceWindow.snapshot();
+    }
+
+    /**
+     * @return the cumulative retry backoff delay histogram (nanos), not to be modified
+     */
+    public Histogram getRetryDelayHistogram() {
+        return retryDelay;
+    }
+
+    /**
+     * @return true if service time is recorded separately from response time
+     */
+    public boolean isOpenLoop() {
+        return serviceCumulative.getCount() > 0;
+    }
+
+    /**
+     * @return number of arrivals that are due but not yet started (open-loop only)
+     */
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * @return number of batches currently in flight (pipelined mode only)
+     */
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public double getRowsPerSec() {
+        return getRows() / Math.max(1, getExecutionTimeSeconds());
+    }
+
     public int getSuccess() {
-        return success;
+        return success.intValue();
     }
 
     public int getTransientFail() {
-        return transientFail;
+        return transientFail.intValue();
     }
 
     public int getNonTransientFail() {
-        return nonTransientFail;
+        return nonTransientFail.intValue();
     }
 
     public double getAvgTime() {
+        refresh();
         return avgTime;
     }
 
+    /**
+     * @return max latency (millis) in the rolling time window
+     */
     public double getMaxTime() {
+        refresh();
         return maxTime;
     }
 
+    /**
+     * @return min latency (millis) in the rolling time window
+     */
     public double getMinTime() {
+        refresh();
         return minTime;
     }
 
     public double getOpsPerSec() {
+        refresh();
         return opsPerSec;
     }
 
     public double getOpsPerMin() {
+        refresh();
         return opsPerMin;
     }
 
     public double getP50() {
+        refresh();
         return p50;
     }
 
     public double getP90() {
+        refresh();
         return p90;
     }
 
     public double getP95() {
+        refresh();
         return p95;
     }
 
     public double getP99() {
+        refresh();
         return p99;
     }
 
     public double getP999() {
+        refresh();
         return p999;
     }
 
@@ -227,6 +414,7 @@ public class Metrics {
 
         private Builder() {
             this.instance = new Metrics();
+            this.instance.frozen = true;
         }
 
         public Builder withUpdateTime(Instant updateTime) {
@@ -280,18 +468,52 @@ public class Metrics {
             return this;
         }
 
+        /**
+         * Set the cumulative and windowed latency histograms, from which the
+         * mean and percentiles are derived on build.
+         */
+        public Builder withHistograms(Histogram cumulative, Histogram window) {
+            instance.cumulative.add(cumulative);
+            instance.frozenWindow = window.copy();
+            return this;
+        }
+
+        public Builder withServiceHistograms(Histogram cumulative, Histogram window) {
+            instance.serviceCumulative.add(cumulative);
+            instance.frozenServiceWindow = window.copy();
+            return this;
+        }
+
+        public Builder withRetryDelayHistogram(Histogram retryDelay) {
+            instance.retryDelay.add(retryDelay);
+            return this;
+        }
+
+        public Builder withRows(long rows) {
+            instance.rows.add(rows);
+            return this;
+        }
+
+        public Builder withExecutionTimeSeconds(double executionTimeSeconds) {
+            instance.executionTimeSeconds = executionTimeSeconds;
+            return this;
+        }
+
         public Builder withSuccess(int success) {
-            instance.success = success;
+            instance.success.add(success);
             return this;
         }
 
         public Builder withFails(int transientFail, int nonTransientFail) {
-            instance.transientFail = transientFail;
-            instance.nonTransientFail = nonTransientFail;
+            instance.transientFail.add(transientFail);
+            instance.nonTransientFail.add(nonTransientFail);
             return this;
         }
 
         public Metrics build() {
+            if (instance.frozenWindow != null) {
+                instance.derive(instance.frozenWindow);
+            }
             return instance;
         }
     }
@@ -0,0 +1,162 @@
+package io.cockroachdb.batch.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breaks down the time of each call into phases, each with its own
+ * cumulative and rolling window histogram.
+ * <p>
+ * Worker threads attach a {@link Tracker} for the duration of a workload.
+ * Tasks and JDBC helpers then call {@link #mark(Phase)} at the end of each
+ * phase, attributing the time elapsed since the previous mark to that phase.
+ * Marking is a thread-local lookup and a nanoTime read, without allocation,
+ * and a no-op on threads without a tracker (such as pipeline producers).
+ *
+ * @author Kai Niemi
+ */
+public class PhaseTimer {
+    public enum Phase {
+        /**
+         * Connection pool checkout and connection setup.
+         */
+        POOL_WAIT("pool"),
+        /**
+         * Batch payload generation, or waiting on a pre-built batch.
+         */
+        GENERATE("gen"),
+        /**
+         * Binding parameters to the statement.
+         */
+        BIND("bind"),
+        /**
+         * Statement execution, including the network round trip.
+         */
+        EXECUTE("exec"),
+        /**
+         * Transaction commit.
+         */
+        COMMIT("commit"),
+        /**
+         * Any time not attributed to a marked phase, such as returning the connection.
+         */
+        OTHER("other");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final ThreadLocal<Tracker> TRACKER = new ThreadLocal<>();
+
+    /**
+     * Attribute the time since the previous mark to the given phase,
+     * if the calling thread has an attached tracker.
+     *
+     * @param phase the phase that just ended
+     */
+    public static void mark(Phase phase) {
+        Tracker tracker = TRACKER.get();
+        if (tracker != null) {
+            tracker.mark(phase);
+        }
+    }
+
+    /**
+     * Detach any tracker from the calling thread.
+     */
+    public static void detach() {
+        TRACKER.remove();
+    }
+
+    /**
+     * Per-thread state of the call in progress.
+     */
+    public static final class Tracker {
+        private final PhaseTimer timer;
+
+        private final long[] pending = new long[PHASES.length];
+
+        private long lastMark;
+
+        private Tracker(PhaseTimer timer) {
+            this.timer = timer;
+        }
+
+        /**
+         * Begin timing a new call, discarding any pending phase times.
+         */
+        public void begin() {
+            for (int i = 0; i < pending.length; i++) {
+                pending[i] = 0;
+            }
+            lastMark = System.nanoTime();
+        }
+
+        void mark(Phase phase) {
+            long now = System.nanoTime();
+            pending[phase.ordinal()] += now - lastMark;
+            lastMark = now;
+        }
+
+        /**
+         * End timing of a successful call and record the phase times.
+         */
+        public void end() {
+            mark(Phase.OTHER);
+            timer.record(pending);
+        }
+    }
+
+    private final Histogram[] cumulative = new Histogram[PHASES.length];
+
+    private final RollingHistogram[] windows = new RollingHistogram[PHASES.length];
+
+    public PhaseTimer() {
+        for (int i = 0; i < PHASES.length; i++) {
+            cumulative[i] = new Histogram();
+            windows[i] = new RollingHistogram(60, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Attach a tracker recording into this timer to the calling thread.
+     *
+     * @return the attached tracker
+     */
+    public Tracker attach() {
+        Tracker tracker = new Tracker(this);
+        TRACKER.set(tracker);
+        return tracker;
+    }
+
+    private void record(long[] phaseNanos) {
+        for (int i = 0; i < PHASES.length; i++) {
+            cumulative[i].record(phaseNanos[i]);
+            windows[i].record(phaseNanos[i]);
+        }
+    }
+
+    /**
+     * @param phase the phase
+     * @return cumulative histogram of the phase over all calls
+     */
+    public Histogram getHistogram(Phase phase) {
+        return cumulative[phase.ordinal()];
+    }
+
+    /**
+     * @param phase the phase
+     * @return a snapshot of the rolling window histogram of the phase
+     */
+    public Histogram getWindowHistogram(Phase phase) {
+        return windows[phase.ordinal()].snapshot();
+    }
+}
@@ -1,16 +1,72 @@
 package io.cockroachdb.batch.util;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public abstract class RandomData {
     private static final char[] VOWELS = "aeiou".toCharArray();
 
     private static final char[] CONSONANTS = "bcdfghjklmnpqrstvwxyz".toCharArray();
 
+    private static final byte[] ALPHABET = "abcdefghijklmnopqrstuvwxyz012345".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int CORPUS_SIZE = 1 << 20;
+
+    private static final int POOL_SIZE = 256;
+
+    private static final int MAX_POOLED_LENGTH = 4096;
+
+    /**
+     * Read-only corpus of pseudo-random text shared by all threads.
+     */
+    private static final byte[] CORPUS = randomString(CORPUS_SIZE).getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Per-thread scratch buffer for encoding strings without an intermediate copy.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[MAX_POOLED_LENGTH]);
+
+    /**
+     * Lazily created pools of strings indexed by length.
+     */
+    private static final AtomicReferenceArray<String[]> STRING_POOLS
+            = new AtomicReferenceArray<>(MAX_POOLED_LENGTH + 1);
+
+    /**
+     * Lazily created pools of byte arrays indexed by length.
+     */
+    private static final AtomicReferenceArray<byte[][]> BYTES_POOLS
+            = new AtomicReferenceArray<>(MAX_POOLED_LENGTH + 1);
+
+    /**
+     * Entropy level of generated payloads, trading uniqueness for speed.
+     */
+    public enum Entropy {
+        /**
+         * Values picked from a small pool of pre-generated values, allocation free
+         * and highly compressible.
+         */
+        LOW,
+        /**
+         * Values sliced at random offsets from a large pseudo-random corpus.
+         */
+        MEDIUM,
+        /**
+         * Unique random values generated from bulk random bits.
+         */
+        HIGH;
+
+        public static Entropy parse(String name) {
+            return valueOf(name.toUpperCase(Locale.ENGLISH));
+        }
+    }
+
     public static <E> Collection<E> selectRandomUnique(List<E> collection, int count) {
         if (count > collection.size()) {
             throw new IllegalArgumentException("Not enough elements");
@@ -43,4 +99,106 @@ public abstract class RandomData {
         return sb.toString();
     }
 
+    /**
+     * Generate a random ASCII string of the given length without per-character
+     * random number generation.
+     *
+     * @param length  the string length
+     * @param entropy the entropy level
+     * @return a random string, possibly a shared instance for low entropy
+     */
+    public static String randomString(int length, Entropy entropy) {
+        return switch (entropy) {
+            case LOW -> length <= MAX_POOLED_LENGTH
+                    ? selectPooled(stringPool(length))
+                    : randomString(length, Entropy.MEDIUM);
+            case MEDIUM -> length <= CORPUS_SIZE
+                    ? new String(CORPUS, randomOffset(length), length, StandardCharsets.ISO_8859_1)
+                    : new String(randomBytes(length, Entropy.MEDIUM), StandardCharsets.ISO_8859_1);
+            case HIGH -> {
+                if (length > MAX_POOLED_LENGTH) {
+                    yield new String(randomBytes(length, Entropy.HIGH), StandardCharsets.ISO_8859_1);
+                }
+                byte[] scratch = SCRATCH.get();
+                fillRandom(scratch, length);
+                yield new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+            }
+        };
+    }
+
+    /**
+     * Generate a random byte array of ASCII characters of the given length without
+     * per-character random number generation.
+     *
+     * @param length  the array length
+     * @param entropy the entropy level
+     * @return a random byte array, a shared instance that must not be modified for low entropy
+     */
+    public static byte[] randomBytes(int length, Entropy entropy) {
+        return switch (entropy) {
+            case LOW -> length <= MAX_POOLED_LENGTH
+                    ? selectPooled(bytesPool(length))
+                    : randomBytes(length, Entropy.MEDIUM);
+            case MEDIUM -> {
+                byte[] bytes = new byte[length];
+                for (int offset = 0; offset < length; offset += CORPUS_SIZE) {
+                    int n = Math.min(CORPUS_SIZE, length - offset);
+                    System.arraycopy(CORPUS, randomOffset(n), bytes, offset, n);
+                }
+                yield bytes;
+            }
+            case HIGH -> {
+                byte[] bytes = new byte[length];
+                fillRandom(bytes, length);
+                yield bytes;
+            }
+        };
+    }
+
+    private static void fillRandom(byte[] bytes, int length) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = 0;
+        while (i < length) {
+            // 12 characters of 5 random bits each per random long
+            long bits = random.nextLong();
+            for (int n = Math.min(12, length - i); n > 0; n--) {
+                bytes[i++] = ALPHABET[(int) (bits & 0x1f)];
+                bits >>>= 5;
+            }
+        }
+    }
+
+    private static int randomOffset(int length) {
+        return ThreadLocalRandom.current().nextInt(CORPUS_SIZE - length + 1);
+    }
+
+    private static <T> T selectPooled(T[] pool) {
+        return pool[ThreadLocalRandom.current().nextInt(pool.length)];
+    }
+
+    private static String[] stringPool(int length) {
+        String[] pool = STRING_POOLS.get(length);
+        if (pool == null) {
+            pool = new String[POOL_SIZE];
+            for (int i = 0; i < POOL_SIZE; i++) {
+                pool[i] = randomString(length, Entropy.MEDIUM);
+            }
+            STRING_POOLS.compareAndSet(length, null, pool);
+            pool = STRING_POOLS.get(length);
+        }
+        return pool;
+    }
+
+    private static byte[][] bytesPool(int length) {
+        byte[][] pool = BYTES_POOLS.get(length);
+        if (pool == null) {
+            pool = new byte[POOL_SIZE][];
+            for (int i = 0; i < POOL_SIZE; i++) {
+                pool[i] = randomBytes(length, Entropy.MEDIUM);
+            }
+            BYTES_POOLS.compareAndSet(length, null, pool);
+            pool = BYTES_POOLS.get(length);
+        }
+        return pool;
+    }
 }
@@ -0,0 +1,78 @@
+package io.cockroachdb.batch.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A rolling time window of latency histograms. Recording goes into the
+ * slot of the current time interval and a slot is replaced by a fresh
+ * histogram once its interval has passed. A snapshot merges the current
+ * and previous slot, covering between one and two intervals of recent history.
+ * <p>
+ * Slots are swapped rather than reset in place, so that values recorded
+ * for a new interval can't be wiped by a concurrent reset.
+ *
+ * @author Kai Niemi
+ */
+public class RollingHistogram {
+    private static final int SLOTS = 2;
+
+    private record Slot(long epoch, Histogram histogram) {
+    }
+
+    private final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(SLOTS);
+
+    private final long intervalNanos;
+
+    private final long startNanos;
+
+    public RollingHistogram(long interval, TimeUnit timeUnit) {
+        this.intervalNanos = timeUnit.toNanos(interval);
+        this.startNanos = System.nanoTime();
+        for (int i = 0; i < SLOTS; i++) {
+            slots.set(i, new Slot(-1, new Histogram()));
+        }
+    }
+
+    private long epochAt(long nanoTime) {
+        return (nanoTime - startNanos) / intervalNanos;
+    }
+
+    public void record(long value) {
+        final long epoch = epochAt(System.nanoTime());
+        final int idx = (int) (epoch % SLOTS);
+
+        Slot slot = slots.get(idx);
+        if (slot.epoch() != epoch) {
+            // Only one thread wins, others record into the winner's histogram
+            slots.compareAndSet(idx, slot, new Slot(epoch, new Histogram()));
+            slot = slots.get(idx);
+        }
+        slot.histogram().record(value);
+    }
+
+    /**
+     * @return a merged copy of the current and previous interval
+     */
+    public Histogram snapshot() {
+        final long epoch = epochAt(System.nanoTime());
+
+        Histogram h = new Histogram();
+        for (int i = 0; i < SLOTS; i++) {
+            Slot slot = slots.get(i);
+            if (slot.epoch() == epoch || slot.epoch() == epoch - 1) {
+                h.add(slot.histogram());
+            }
+        }
+        return h;
+    }
+
+    /**
+     * @return the time span in seconds covered by a snapshot taken now
+     */
+    public double getWindowSeconds() {
+        long elapsed = System.nanoTime() - startNanos;
+        long windowNanos = Math.min(elapsed, elapsed % intervalNanos + intervalNanos);
+        return windowNanos / 1_000_000_000.0;
+    }
+}
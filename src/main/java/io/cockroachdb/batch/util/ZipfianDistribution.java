@@ -0,0 +1,74 @@
+package io.cockroachdb.batch.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zipf distributed keys by rejection-inversion sampling (Hörmann and Derflinger),
+ * which has constant setup cost for any keyspace size and typically takes
+ * a single iteration per key. Unlike the zeta-based generator in YCSB, no
+ * harmonic sum over the keyspace is needed and any exponent above zero works.
+ *
+ * @author Kai Niemi
+ */
+class ZipfianDistribution implements KeyDistribution {
+    private final long keyspace;
+
+    private final double exponent;
+
+    private final double hIntegralX1;
+
+    private final double hIntegralKeyspace;
+
+    private final double s;
+
+    ZipfianDistribution(long keyspace, double exponent) {
+        Assert.isTrue(keyspace > 0, "keyspace must be > 0");
+        Assert.isTrue(exponent > 0, "exponent must be > 0");
+
+        this.keyspace = keyspace;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1.0;
+        this.hIntegralKeyspace = hIntegral(keyspace + 0.5);
+        this.s = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    @Override
+    public long next(ThreadLocalRandom random) {
+        while (true) {
+            double u = hIntegralKeyspace + random.nextDouble() * (hIntegralX1 - hIntegralKeyspace);
+            double x = hIntegralInverse(u);
+            long k = Math.min(keyspace, Math.max(1, (long) (x + 0.5)));
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k - 1;
+            }
+        }
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1.0 - exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1.0, x * (1.0 - exponent));
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x, with a series expansion near zero
+    private static double helper1(double x) {
+        return Math.abs(x) > 1e-8
+                ? Math.log1p(x) / x
+                : 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+
+    // (exp(x) - 1) / x, with a series expansion near zero
+    private static double helper2(double x) {
+        return Math.abs(x) > 1e-8
+                ? Math.expm1(x) / x
+                : 1.0 + x * 0.5 * (1.0 + x * (1.0 / 3.0) * (1.0 + 0.25 * x));
+    }
+}
@@ -0,0 +1,149 @@
+package io.cockroachdb.batch.workload;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.cockroachdb.batch.util.Histogram;
+
+/**
+ * A hill-climbing batch size controller that converges on the batch size
+ * giving the highest rows/sec, bounded by min/max and an optional p99
+ * latency limit. For each evaluation period, the batch size keeps moving
+ * in the same direction as long as throughput improves and reverses
+ * otherwise. Exceeding the p99 limit halves the batch size (multiplicative
+ * decrease). The step narrows on each reversal to settle around the optimum.
+ *
+ * @author Kai Niemi
+ */
+public class AdaptiveBatchSizeController implements BatchSizeController {
+    private static final int TRAJECTORY_LENGTH = 12;
+
+    private static final double MIN_STEP = 0.05;
+
+    private static final double IMPROVEMENT_THRESHOLD = 1.02;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private final long p99LimitNanos;
+
+    private final long periodNanos;
+
+    private final Histogram periodHistogram = new Histogram();
+
+    private final LinkedList<Integer> trajectory = new LinkedList<>();
+
+    private volatile int batchSize;
+
+    private volatile int bestBatchSize;
+
+    private double bestRowsPerSec;
+
+    private double previousRowsPerSec;
+
+    private int direction = 1;
+
+    private double step = 0.5;
+
+    private long periodStart = System.nanoTime();
+
+    private long periodRows;
+
+    /**
+     * @param initialBatchSize the initial batch size
+     * @param minBatchSize     the lower bound
+     * @param maxBatchSize     the upper bound
+     * @param p99LimitMillis   max acceptable p99 batch latency, or zero for no limit
+     * @param period           evaluation period in seconds
+     */
+    public AdaptiveBatchSizeController(int initialBatchSize, int minBatchSize, int maxBatchSize,
+                                       long p99LimitMillis, long period) {
+        if (minBatchSize <= 0 || minBatchSize > maxBatchSize) {
+            throw new IllegalArgumentException("Expected 0 < min <= max batch size");
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.p99LimitNanos = TimeUnit.MILLISECONDS.toNanos(p99LimitMillis);
+        this.periodNanos = TimeUnit.SECONDS.toNanos(period);
+        this.batchSize = clamp(initialBatchSize);
+        this.bestBatchSize = this.batchSize;
+        this.trajectory.add(this.batchSize);
+    }
+
+    private int clamp(long size) {
+        return (int) Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public synchronized void record(long durationNanos, int rows) {
+        periodHistogram.record(durationNanos);
+        periodRows += rows;
+
+        final long now = System.nanoTime();
+        if (now - periodStart >= periodNanos && periodHistogram.getCount() >= 10) {
+            adjust(periodRows * 1e9 / (now - periodStart), periodHistogram.getValueAtPercentile(.99));
+            periodHistogram.reset();
+            periodRows = 0;
+            periodStart = now;
+        }
+    }
+
+    private void adjust(double rowsPerSec, long p99) {
+        final int current = batchSize;
+
+        if (p99LimitNanos > 0 && p99 > p99LimitNanos) {
+            // Multiplicative decrease on latency limit breach
+            direction = -1;
+            batchSize = clamp(current / 2);
+        } else {
+            if (rowsPerSec > bestRowsPerSec) {
+                bestRowsPerSec = rowsPerSec;
+                bestBatchSize = current;
+            }
+
+            if (rowsPerSec < previousRowsPerSec * IMPROVEMENT_THRESHOLD) {
+                direction = -direction;
+                step = Math.max(MIN_STEP, step / 2);
+            }
+
+            int next = clamp(Math.round(direction > 0
+                    ? current * (1 + step) + 1
+                    : current / (1 + step)));
+            if (next == current) {
+                // Bounded, turn around
+                direction = -direction;
+            }
+            batchSize = next;
+        }
+
+        previousRowsPerSec = rowsPerSec;
+
+        trajectory.addLast(batchSize);
+        if (trajectory.size() > TRAJECTORY_LENGTH) {
+            trajectory.removeFirst();
+        }
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return true;
+    }
+
+    @Override
+    public int getRecommendedBatchSize() {
+        return bestBatchSize;
+    }
+
+    @Override
+    public synchronized List<Integer> getTrajectory() {
+        return new ArrayList<>(trajectory);
+    }
+}
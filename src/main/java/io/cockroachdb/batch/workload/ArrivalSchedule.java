@@ -0,0 +1,102 @@
+package io.cockroachdb.batch.workload;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule of intended start times for the calls of a single workload.
+ * <p>
+ * In closed-loop mode the next call starts as soon as the previous one
+ * completes. In open-loop mode calls are issued at a target arrival rate
+ * regardless of completion times, with either constant or exponentially
+ * distributed (Poisson process) inter-arrival times. Latency is then
+ * measured from the intended start time, which corrects for coordinated
+ * omission when the system under test stalls.
+ * <p>
+ * A schedule is owned by a single worker thread and not thread-safe.
+ *
+ * @author Kai Niemi
+ */
+public class ArrivalSchedule {
+    public enum Distribution {
+        CONSTANT,
+        POISSON;
+
+        public static Distribution parse(String name) {
+            return valueOf(name.toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    public static ArrivalSchedule closedLoop() {
+        return new ArrivalSchedule(null, 0);
+    }
+
+    /**
+     * @param distribution the inter-arrival time distribution
+     * @param ratePerSec the target arrival rate in calls per second, must be > 0
+     */
+    public static ArrivalSchedule openLoop(Distribution distribution, double ratePerSec) {
+        if (ratePerSec <= 0) {
+            throw new IllegalArgumentException("Arrival rate must be > 0");
+        }
+        return new ArrivalSchedule(distribution, TimeUnit.SECONDS.toNanos(1) / ratePerSec);
+    }
+
+    private final Distribution distribution;
+
+    private final double meanIntervalNanos;
+
+    private long nextArrival;
+
+    private ArrivalSchedule(Distribution distribution, double meanIntervalNanos) {
+        this.distribution = distribution;
+        this.meanIntervalNanos = meanIntervalNanos;
+    }
+
+    public boolean isOpenLoop() {
+        return distribution != null;
+    }
+
+    /**
+     * Wait until the intended start time of the next call, if not already passed.
+     *
+     * @return the intended start time in {@link System#nanoTime()} units
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public long awaitNext() throws InterruptedException {
+        final long now = System.nanoTime();
+
+        if (!isOpenLoop()) {
+            return now;
+        }
+
+        if (nextArrival == 0) {
+            nextArrival = now;
+        }
+
+        final long intended = nextArrival;
+
+        nextArrival += switch (distribution) {
+            case CONSTANT -> (long) meanIntervalNanos;
+            case POISSON -> (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanIntervalNanos);
+        };
+
+        if (intended > now) {
+            TimeUnit.NANOSECONDS.sleep(intended - now);
+        }
+
+        return intended;
+    }
+
+    /**
+     * @return the approximate number of arrivals that are due but not yet started
+     */
+    public long getBacklog() {
+        if (!isOpenLoop() || nextArrival == 0) {
+            return 0;
+        }
+        long lag = System.nanoTime() - nextArrival;
+        return lag > 0 ? (long) (lag / meanIntervalNanos) + 1 : 0;
+    }
+}
@@ -0,0 +1,258 @@
+package io.cockroachdb.batch.workload;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.cockroachdb.batch.jdbc.DataAccessException;
+
+/**
+ * A bounded producer/consumer pipeline decoupling batch generation
+ * from statement execution. Producer threads pre-build batches into
+ * bounded queues and consumers (the workload workers) only take ready
+ * batches, so generation time is not counted as database latency.
+ * <p>
+ * There is one queue per batch size requested by consumers, since workers
+ * with adaptive batch sizes may request different sizes at the same time.
+ * Producers fill the least filled queue. Each consumer thread is attached
+ * to the queue of the size it last requested, and a queue is dropped along
+ * with its batches only once no consumer is attached and none has taken
+ * from it for a while. Consumers executing long batches keep their queue.
+ * <p>
+ * Backpressure is tracked as the time producers are blocked on a full
+ * queue and the time consumers wait on an empty queue.
+ * <p>
+ * If batch generation fails, the producer stops and the failure is rethrown
+ * to consumers rather than leaving them waiting on an empty queue.
+ *
+ * @param <B> the batch type
+ * @author Kai Niemi
+ */
+public class BatchPipeline<B> implements Instrumented {
+    private static class Lane<B> {
+        final BlockingQueue<B> queue;
+
+        volatile long lastTake = System.nanoTime();
+
+        Lane(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private static final long POLL_MILLIS = 100;
+
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final String name;
+
+    private final IntFunction<B> generator;
+
+    private final int producers;
+
+    private final int capacity;
+
+    private final Map<Integer, Lane<B>> lanes = new ConcurrentHashMap<>();
+
+    // Number of consumer threads whose last requested batch size is the key
+    private final Map<Integer, AtomicInteger> consumers = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Integer> consumerBatchSize = new ThreadLocal<>();
+
+    private final List<Thread> producerThreads = new ArrayList<>();
+
+    private final LongAdder producerStallNanos = new LongAdder();
+
+    private final LongAdder consumerWaitNanos = new LongAdder();
+
+    private final LongAdder consumerTakes = new LongAdder();
+
+    private final LongAdder discarded = new LongAdder();
+
+    private volatile boolean running;
+
+    private volatile boolean stopped;
+
+    private volatile RuntimeException failure;
+
+    private long startTime;
+
+    public BatchPipeline(String name, IntFunction<B> generator, int producers, int capacity) {
+        this.name = name;
+        this.generator = generator;
+        this.producers = producers;
+        this.capacity = capacity;
+    }
+
+    private synchronized void startIfNeeded() {
+        if (running || stopped) {
+            return;
+        }
+
+        running = true;
+        startTime = System.nanoTime();
+
+        for (int i = 1; i <= producers; i++) {
+            producerThreads.add(Thread.ofPlatform()
+                    .daemon()
+                    .name(name + "-producer-" + i)
+                    .start(this::produce));
+        }
+
+        logger.debug("Started %d producers for %s with queue capacity %d"
+                .formatted(producers, name, capacity));
+    }
+
+    private void produce() {
+        while (running) {
+            final Map.Entry<Integer, Lane<B>> target = nextLane();
+            if (target == null) {
+                try {
+                    Thread.sleep(POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                continue;
+            }
+
+            final B batch;
+            try {
+                batch = generator.apply(target.getKey());
+            } catch (RuntimeException e) {
+                logger.error("Batch generation failed for %s".formatted(name), e);
+                failure = e;
+                break;
+            }
+
+            final Lane<B> lane = target.getValue();
+            final long t0 = System.nanoTime();
+            try {
+                while (running && !lane.queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (isIdle(target.getKey(), lane)) {
+                        discarded.increment();
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                producerStallNanos.add(System.nanoTime() - t0);
+            }
+        }
+    }
+
+    // The least filled lane still requested by consumers, dropping idle lanes
+    private Map.Entry<Integer, Lane<B>> nextLane() {
+        Map.Entry<Integer, Lane<B>> next = null;
+        for (Map.Entry<Integer, Lane<B>> entry : lanes.entrySet()) {
+            Lane<B> lane = entry.getValue();
+            if (isIdle(entry.getKey(), lane)) {
+                if (lanes.remove(entry.getKey(), lane)) {
+                    discarded.add(lane.queue.size());
+                }
+            } else if (next == null || lane.queue.size() < next.getValue().queue.size()) {
+                next = entry;
+            }
+        }
+        return next;
+    }
+
+    private boolean isIdle(int batchSize, Lane<?> lane) {
+        AtomicInteger attached = consumers.get(batchSize);
+        return (attached == null || attached.get() == 0)
+                && System.nanoTime() - lane.lastTake > IDLE_NANOS;
+    }
+
+    // Move the calling consumer over to the lane of the requested size
+    private void attach(int batchSize) {
+        Integer previous = consumerBatchSize.get();
+        if (previous != null && previous == batchSize) {
+            return;
+        }
+        if (previous != null) {
+            consumers.get(previous).decrementAndGet();
+        }
+        consumers.computeIfAbsent(batchSize, k -> new AtomicInteger()).incrementAndGet();
+        consumerBatchSize.set(batchSize);
+    }
+
+    /**
+     * Take the next pre-built batch of the requested size, blocking until one is available.
+     *
+     * @param batchSize the requested batch size
+     * @return a batch of the requested size
+     * @throws DataAccessException if batch generation failed or the pipeline is stopped
+     */
+    public B take(int batchSize) {
+        startIfNeeded();
+        attach(batchSize);
+
+        final long t0 = System.nanoTime();
+        try {
+            while (true) {
+                if (failure != null) {
+                    throw new DataAccessException("Batch generation failed for " + name, failure);
+                }
+                if (!running) {
+                    throw new DataAccessException("Pipeline stopped for " + name);
+                }
+                // Looked up on every poll in case the lane was dropped as idle meanwhile
+                Lane<B> lane = lanes.computeIfAbsent(batchSize, k -> new Lane<>(capacity));
+                lane.lastTake = System.nanoTime();
+                B batch = lane.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    return batch;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException(e);
+        } finally {
+            consumerWaitNanos.add(System.nanoTime() - t0);
+            consumerTakes.increment();
+        }
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        if (!running) {
+            return;
+        }
+        running = false;
+        producerThreads.forEach(Thread::interrupt);
+        producerThreads.clear();
+        lanes.clear();
+    }
+
+    @Override
+    public Map<String, Number> getGauges() {
+        Map<String, Number> gauges = new LinkedHashMap<>();
+        if (!running) {
+            return gauges;
+        }
+
+        long elapsed = Math.max(1, System.nanoTime() - startTime);
+        long takes = Math.max(1, consumerTakes.sum());
+
+        gauges.put("queue-depth", lanes.values().stream().mapToInt(lane -> lane.queue.size()).sum());
+        gauges.put("batch-sizes", lanes.size());
+        gauges.put("producer-stall%", producerStallNanos.sum() * 100.0 / (elapsed * producers));
+        gauges.put("consumer-wait-ms", consumerWaitNanos.sum() / (takes * 1_000_000.0));
+        gauges.put("discarded", discarded.sum());
+        return gauges;
+    }
+}
@@ -0,0 +1,47 @@
+package io.cockroachdb.batch.workload;
+
+import java.util.List;
+
+/**
+ * Controls the batch size used by a workload, either fixed or
+ * adjusted at runtime based on observed throughput and latency.
+ *
+ * @author Kai Niemi
+ */
+public interface BatchSizeController {
+    static BatchSizeController fixed(int batchSize) {
+        return () -> batchSize;
+    }
+
+    /**
+     * @return the batch size to use for the next call
+     */
+    int getBatchSize();
+
+    /**
+     * Record the outcome of a successful call.
+     *
+     * @param durationNanos the call duration
+     * @param rows          the number of rows processed
+     */
+    default void record(long durationNanos, int rows) {
+    }
+
+    default boolean isAdaptive() {
+        return false;
+    }
+
+    /**
+     * @return the batch size with the best observed throughput so far
+     */
+    default int getRecommendedBatchSize() {
+        return getBatchSize();
+    }
+
+    /**
+     * @return recent batch size decisions, oldest first
+     */
+    default List<Integer> getTrajectory() {
+        return List.of(getBatchSize());
+    }
+}
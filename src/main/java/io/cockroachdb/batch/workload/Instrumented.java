@@ -0,0 +1,24 @@
+package io.cockroachdb.batch.workload;
+
+import java.util.Map;
+
+/**
+ * Interface to be implemented by tasks that expose custom gauges,
+ * printed alongside the call metrics of the workloads running the task.
+ *
+ * @author Kai Niemi
+ */
+public interface Instrumented {
+    /**
+     * @return gauge values by name in display order, or an empty map if none
+     */
+    Map<String, Number> getGauges();
+
+    /**
+     * @return descriptive labels of the task configuration, such as for comparing
+     * variants of the same task, or an empty map if none
+     */
+    default Map<String, String> getLabels() {
+        return Map.of();
+    }
+}
@@ -0,0 +1,410 @@
+package io.cockroachdb.batch.workload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.cockroachdb.batch.Task;
+import io.cockroachdb.batch.jdbc.PoolMetrics;
+import io.cockroachdb.batch.util.Histogram;
+import io.cockroachdb.batch.util.Metrics;
+import io.cockroachdb.batch.util.PhaseTimer;
+
+/**
+ * An HTTP endpoint exposing workload metrics in the Prometheus text
+ * or OpenMetrics format (by the scraper's Accept header) on /metrics.
+ * <p>
+ * Latencies are exported as cumulative histograms with fixed bucket
+ * boundaries per task, so that percentiles can be computed across
+ * workers and load generator processes with histogram_quantile().
+ * Scrapes read the lock-free histograms and counters directly on
+ * the server thread and never block the recording path.
+ *
+ * @author Kai Niemi
+ */
+public class MetricsEndpoint implements AutoCloseable {
+    private static final String PREFIX = "batch_demo_";
+
+    private static final String[] BUCKET_LABELS = {
+            "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05",
+            "0.1", "0.25", "0.5", "1", "2.5", "5", "10", "30", "60", "+Inf"
+    };
+
+    private static final long[] BUCKET_BOUNDARIES = new long[BUCKET_LABELS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_LABELS.length - 1; i++) {
+            BUCKET_BOUNDARIES[i] = (long) (Double.parseDouble(BUCKET_LABELS[i]) * 1_000_000_000L);
+        }
+        BUCKET_BOUNDARIES[BUCKET_LABELS.length - 1] = Long.MAX_VALUE;
+    }
+
+    private static final String OPENMETRICS_CONTENT_TYPE
+            = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final String TEXT_CONTENT_TYPE
+            = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static double toSeconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Cumulative bucket counts and sum merged across histograms.
+     */
+    private static class Buckets {
+        private final long[] counts = new long[BUCKET_BOUNDARIES.length];
+
+        private long sum;
+
+        void add(Histogram histogram) {
+            long[] c = histogram.getCountsAtOrBelow(BUCKET_BOUNDARIES);
+            for (int i = 0; i < c.length; i++) {
+                counts[i] += c[i];
+            }
+            sum += histogram.getSum();
+        }
+
+        long getCount() {
+            return counts[counts.length - 1];
+        }
+    }
+
+    /**
+     * Metrics of all workers of one task.
+     */
+    private static class TaskSample {
+        private final Buckets response = new Buckets();
+
+        private final Buckets service = new Buckets();
+
+        private final Buckets retryDelay = new Buckets();
+
+        private final Map<WorkloadStatus, Integer> workers = new LinkedHashMap<>();
+
+        private PhaseTimer phaseTimer;
+
+        private long success;
+
+        private long retry;
+
+        private long error;
+
+        private long rows;
+
+        private long backlog;
+
+        private long inFlight;
+
+        private long inFlightLimit;
+
+        private long batchSizeSum;
+
+        private int running;
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final WorkloadManager workloadManager;
+
+    private final HttpServer server;
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "metrics-endpoint");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private PoolMetrics poolMetrics;
+
+    private Map<String, Map<String, String>> labels = Map.of();
+
+    public MetricsEndpoint(WorkloadManager workloadManager, int port) {
+        this.workloadManager = workloadManager;
+
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to bind metrics endpoint to port: " + port, e);
+        }
+        this.server.createContext("/metrics", this::handle);
+        this.server.setExecutor(executorService);
+        this.server.start();
+
+        logger.info("Serving metrics on http://localhost:%d/metrics".formatted(port));
+    }
+
+    public void setPoolMetrics(PoolMetrics poolMetrics) {
+        this.poolMetrics = poolMetrics;
+    }
+
+    /**
+     * @param labels additional metric labels by task (workload name without worker number)
+     */
+    public void setLabels(Map<String, Map<String, String>> labels) {
+        this.labels = labels;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            String accept = exchange.getRequestHeaders().getFirst("Accept");
+            boolean openMetrics = accept != null && accept.contains("application/openmetrics-text");
+
+            byte[] body;
+            try {
+                body = scrape(openMetrics).getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException e) {
+                logger.warn("Metrics scrape failed", e);
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type",
+                    openMetrics ? OPENMETRICS_CONTENT_TYPE : TEXT_CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    private String scrape(boolean openMetrics) {
+        Map<String, TaskSample> samples = new LinkedHashMap<>();
+
+        for (Workload<Task> workload : workloadManager.getWorkloads()) {
+            TaskSample sample = samples.computeIfAbsent(workload.getTaskName(), k -> new TaskSample());
+            WorkloadStatus status = workload.getStatus();
+            Metrics m = workload.getMetrics();
+
+            sample.response.add(m.getHistogram());
+            if (m.isOpenLoop()) {
+                sample.service.add(m.getServiceTimeHistogram());
+            }
+            sample.retryDelay.add(m.getRetryDelayHistogram());
+            sample.workers.merge(status, 1, Integer::sum);
+            sample.phaseTimer = workload.getPhaseTimer();
+            sample.success += m.getSuccess();
+            sample.retry += m.getTransientFail();
+            sample.error += m.getNonTransientFail();
+            sample.rows += m.getRows();
+
+            if (status == WorkloadStatus.RUNNING) {
+                sample.backlog += m.getBacklog();
+                sample.inFlight += m.getInFlight();
+                sample.inFlightLimit += workload.getInFlightLimit();
+                sample.batchSizeSum += workload.getBatchSizeController().getBatchSize();
+                sample.running++;
+            }
+        }
+
+        Writer w = new Writer(openMetrics);
+
+        w.family("call_duration_seconds", "histogram", "seconds",
+                "Response time of successful calls (batches)");
+        samples.forEach((task, s) -> w.histogram("call_duration_seconds", taskLabels(task), s.response));
+
+        if (samples.values().stream().anyMatch(s -> s.service.getCount() > 0)) {
+            w.family("service_duration_seconds", "histogram", "seconds",
+                    "Service time of successful calls excluding queueing delay (open-loop only)");
+            samples.forEach((task, s) -> {
+                if (s.service.getCount() > 0) {
+                    w.histogram("service_duration_seconds", taskLabels(task), s.service);
+                }
+            });
+        }
+
+        w.family("phase_duration_seconds", "histogram", "seconds",
+                "Time spent per phase of successful calls");
+        samples.forEach((task, s) -> {
+            if (s.phaseTimer == null) {
+                return;
+            }
+            for (PhaseTimer.Phase phase : PhaseTimer.Phase.values()) {
+                Histogram h = s.phaseTimer.getHistogram(phase);
+                if (h.getMax() > 0) {
+                    Buckets buckets = new Buckets();
+                    buckets.add(h);
+                    w.histogram("phase_duration_seconds",
+                            taskLabels(task) + "," + label("phase", phase.getLabel()), buckets);
+                }
+            }
+        });
+
+        w.family("retry_delay_seconds", "histogram", "seconds",
+                "Backoff delay before retrying after transient failures, including retry budget waits");
+        samples.forEach((task, s) -> w.histogram("retry_delay_seconds", taskLabels(task), s.retryDelay));
+
+        w.family("retry_budget_throttled", "counter", null, "Retries delayed by an exhausted retry budget");
+        w.sample("retry_budget_throttled_total", null, workloadManager.getRetryBudget().getThrottled());
+
+        w.family("calls", "counter", null, "Completed calls by outcome");
+        samples.forEach((task, s) -> {
+            w.sample("calls_total", taskLabels(task) + "," + label("outcome", "success"), s.success);
+            w.sample("calls_total", taskLabels(task) + "," + label("outcome", "retry"), s.retry);
+            w.sample("calls_total", taskLabels(task) + "," + label("outcome", "error"), s.error);
+        });
+
+        w.family("rows", "counter", null, "Rows written, read or deleted by successful calls");
+        samples.forEach((task, s) -> w.sample("rows_total", taskLabels(task), s.rows));
+
+        w.family("workers", "gauge", null, "Number of workers by status");
+        samples.forEach((task, s) -> s.workers.forEach((status, count) ->
+                w.sample("workers", taskLabels(task) + "," + label("status", status.name()), count)));
+
+        w.family("batch_size", "gauge", null, "Mean current batch size of running workers");
+        samples.forEach((task, s) -> {
+            if (s.running > 0) {
+                w.sample("batch_size", taskLabels(task), (double) s.batchSizeSum / s.running);
+            }
+        });
+
+        w.family("backlog", "gauge", null, "Arrivals due but not yet started (open-loop only)");
+        samples.forEach((task, s) -> w.sample("backlog", taskLabels(task), s.backlog));
+
+        Map<Task, ThroughputGovernor> governors = workloadManager.getThroughputGovernors();
+        if (!governors.isEmpty()) {
+            Map<String, Double> targets = new LinkedHashMap<>();
+            workloadManager.getWorkloads().forEach(workload -> {
+                ThroughputGovernor governor = governors.get(workload.getTask());
+                if (governor != null) {
+                    targets.putIfAbsent(workload.getTaskName(), governor.getTargetRowsPerSec());
+                }
+            });
+            w.family("rows_per_second_target", "gauge", null,
+                    "Target throughput in rows/sec, compare with rate(batch_demo_rows_total)");
+            targets.forEach((task, target) -> w.sample("rows_per_second_target", taskLabels(task), target));
+        }
+
+        w.family("in_flight", "gauge", null, "Batches currently in flight (pipelined mode only)");
+        samples.forEach((task, s) -> w.sample("in_flight", taskLabels(task), s.inFlight));
+
+        w.family("in_flight_limit", "gauge", null, "Max batches in flight across running workers");
+        samples.forEach((task, s) -> w.sample("in_flight_limit", taskLabels(task), s.inFlightLimit));
+
+        if (poolMetrics != null && poolMetrics.isAvailable()) {
+            w.family("pool_connections", "gauge", null, "Connection pool connections by state");
+            w.sample("pool_connections", label("state", "active"), poolMetrics.getActiveConnections());
+            w.sample("pool_connections", label("state", "idle"), poolMetrics.getIdleConnections());
+            w.sample("pool_connections", label("state", "max"), poolMetrics.getMaxConnections());
+
+            w.family("pool_pending_threads", "gauge", null, "Threads waiting for a connection");
+            w.sample("pool_pending_threads", null, poolMetrics.getPendingThreads());
+
+            w.family("pool_timeouts", "counter", null, "Connection acquire timeouts");
+            w.sample("pool_timeouts_total", null, poolMetrics.getTimeouts());
+
+            Buckets acquire = new Buckets();
+            acquire.add(poolMetrics.getAcquireTimeHistogram());
+            w.family("pool_acquire_duration_seconds", "histogram", "seconds",
+                    "Time to acquire a connection from the pool");
+            w.histogram("pool_acquire_duration_seconds", null, acquire);
+
+            Buckets usage = new Buckets();
+            usage.add(poolMetrics.getUsageTimeHistogram());
+            w.family("pool_usage_duration_seconds", "histogram", "seconds",
+                    "Time a connection is borrowed from the pool");
+            w.histogram("pool_usage_duration_seconds", null, usage);
+        }
+
+        return w.end();
+    }
+
+    private String taskLabels(String task) {
+        StringBuilder sb = new StringBuilder(label("task", task));
+        labels.getOrDefault(task, Map.of())
+                .forEach((name, value) -> sb.append(',').append(label(name, value)));
+        return sb.toString();
+    }
+
+    private static String label(String name, String value) {
+        return name + "=\"" + escape(value) + "\"";
+    }
+
+    /**
+     * Writer of the exposition format, differing only in metadata
+     * and termination between Prometheus text and OpenMetrics.
+     */
+    private static class Writer {
+        private final StringBuilder sb = new StringBuilder(8192);
+
+        private final boolean openMetrics;
+
+        Writer(boolean openMetrics) {
+            this.openMetrics = openMetrics;
+        }
+
+        void family(String name, String type, String unit, String help) {
+            // Prometheus text names counter families by their sample name
+            String familyName = PREFIX + name + (!openMetrics && type.equals("counter") ? "_total" : "");
+            sb.append("# TYPE ").append(familyName).append(' ').append(type).append('\n');
+            if (openMetrics && unit != null) {
+                sb.append("# UNIT ").append(familyName).append(' ').append(unit).append('\n');
+            }
+            sb.append("# HELP ").append(familyName).append(' ').append(help).append('\n');
+        }
+
+        void sample(String name, String labels, long value) {
+            line(name, labels).append(value).append('\n');
+        }
+
+        void sample(String name, String labels, double value) {
+            line(name, labels).append(value).append('\n');
+        }
+
+        void histogram(String name, String labels, Buckets buckets) {
+            String prefix = labels != null ? labels + "," : "";
+            for (int i = 0; i < BUCKET_LABELS.length; i++) {
+                sample(name + "_bucket", prefix + label("le", BUCKET_LABELS[i]), buckets.counts[i]);
+            }
+            sample(name + "_count", labels, buckets.getCount());
+            sample(name + "_sum", labels, toSeconds(buckets.sum));
+        }
+
+        private StringBuilder line(String name, String labels) {
+            sb.append(PREFIX).append(name);
+            if (labels != null) {
+                sb.append('{').append(labels).append('}');
+            }
+            return sb.append(' ');
+        }
+
+        String end() {
+            if (openMetrics) {
+                sb.append("# EOF\n");
+            }
+            return sb.toString();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executorService.shutdownNow();
+        try {
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
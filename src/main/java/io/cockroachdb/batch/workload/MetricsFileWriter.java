@@ -0,0 +1,316 @@
+package io.cockroachdb.batch.workload;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.cockroachdb.batch.Task;
+import io.cockroachdb.batch.util.Histogram;
+import io.cockroachdb.batch.util.Metrics;
+
+/**
+ * A time-series metrics sink appending one record per workload and interval,
+ * plus one for the total across workloads, to a CSV or NDJSON file.
+ * Rates and percentiles are computed over each interval from histogram deltas.
+ * <p>
+ * Records are sampled on a scheduler thread and handed to a dedicated writer
+ * thread through a bounded queue, with buffered I/O flushed periodically.
+ * Worker threads never touch the sink, and if the writer falls behind,
+ * records are dropped rather than blocking the sampler.
+ *
+ * @author Kai Niemi
+ */
+public class MetricsFileWriter implements AutoCloseable {
+    public enum Format {
+        CSV,
+        NDJSON;
+
+        public static Format parse(String name) {
+            return valueOf(name.toUpperCase(Locale.ENGLISH));
+        }
+
+        public static Format fromFileName(String fileName) {
+            String name = fileName.toLowerCase(Locale.ENGLISH);
+            return name.endsWith(".json") || name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : CSV;
+        }
+    }
+
+    private record Sample(long nanoTime, long success, long rows,
+                          long transientFail, long nonTransientFail, Histogram histogram) {
+    }
+
+    private static final String[] COLUMNS = {
+            "time", "elapsed_s", "id", "name", "status", "batch_size",
+            "ops_per_sec", "rows_per_sec", "mean_ms", "p50_ms", "p95_ms", "p99_ms", "p999_ms", "max_ms",
+            "success", "retry", "error", "total_rows"
+    };
+
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private static double toMillis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ScheduledExecutorService scheduledExecutorService
+            = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "metrics-sampler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final WorkloadManager workloadManager;
+
+    private final Format format;
+
+    private final BufferedWriter writer;
+
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private final Thread writerThread;
+
+    private final Map<Integer, Sample> previousSamples = new HashMap<>();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final long startTime = System.nanoTime();
+
+    private volatile boolean running = true;
+
+    public MetricsFileWriter(WorkloadManager workloadManager, Path path, Format format) {
+        this.workloadManager = workloadManager;
+        this.format = format;
+
+        try {
+            boolean exists = Files.exists(path) && Files.size(path) > 0;
+            this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (format == Format.CSV && !exists) {
+                writer.write(String.join(",", COLUMNS));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open metrics file: " + path, e);
+        }
+
+        this.writerThread = Thread.ofPlatform()
+                .daemon()
+                .name("metrics-writer")
+                .start(this::drain);
+
+        logger.info("Writing %s metrics to %s".formatted(format, path));
+    }
+
+    public void scheduleWithPeriod(long interval, TimeUnit timeUnit) {
+        scheduledExecutorService.scheduleAtFixedRate(() -> {
+            try {
+                sample();
+            } catch (RuntimeException e) {
+                logger.warn("Metrics sampling failed", e);
+            }
+        }, interval, interval, timeUnit);
+    }
+
+    private void drain() {
+        long lastFlush = System.currentTimeMillis();
+        try {
+            while (running || !queue.isEmpty()) {
+                String line = queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (line != null) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+                    writer.flush();
+                    lastFlush = now;
+                }
+            }
+            writer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Metrics file write failed - no more records will be written", e);
+            running = false;
+            queue.clear();
+        }
+    }
+
+    /**
+     * Sample all workloads and enqueue one record per workload with the
+     * changes since the previous sample, plus a total record.
+     */
+    private synchronized void sample() {
+        final long now = System.nanoTime();
+        final String time = Instant.now().toString();
+        final double elapsed = (now - startTime) / 1_000_000_000.0;
+
+        final List<Workload<Task>> workloads = workloadManager.getWorkloads();
+
+        Histogram totalHistogram = new Histogram();
+        long totalSuccess = 0;
+        long totalRows = 0;
+        long totalRetry = 0;
+        long totalError = 0;
+        double totalOpsPerSec = 0;
+        double totalRowsPerSec = 0;
+        int sampled = 0;
+
+        for (Workload<Task> workload : workloads) {
+            Metrics m = workload.getMetrics();
+
+            Sample current = new Sample(now, m.getSuccess(), m.getRows(),
+                    m.getTransientFail(), m.getNonTransientFail(), m.getHistogram().copy());
+            Sample previous = previousSamples.put(workload.getId(), current);
+            if (previous == null) {
+                previous = new Sample(startTime, 0, 0, 0, 0, new Histogram());
+            }
+
+            // Skip finished workloads already reported on
+            if (!workload.isRunning() && current.success() == previous.success()
+                && current.transientFail() == previous.transientFail()
+                && current.nonTransientFail() == previous.nonTransientFail()) {
+                continue;
+            }
+
+            double seconds = Math.max(1e-9, (now - previous.nanoTime()) / 1_000_000_000.0);
+            Histogram h = current.histogram().delta(previous.histogram());
+            long success = current.success() - previous.success();
+            long rows = current.rows() - previous.rows();
+            long retry = current.transientFail() - previous.transientFail();
+            long error = current.nonTransientFail() - previous.nonTransientFail();
+
+            offer(format(time, elapsed, workload.getId(), workload.getName(), workload.getStatus().name(),
+                    workload.getBatchSizeController().getBatchSize(),
+                    success / seconds, rows / seconds, h, success, retry, error, current.rows()));
+
+            totalHistogram.add(h);
+            totalSuccess += success;
+            totalRows += current.rows();
+            totalRetry += retry;
+            totalError += error;
+            totalOpsPerSec += success / seconds;
+            totalRowsPerSec += rows / seconds;
+            sampled++;
+        }
+
+        if (sampled > 1) {
+            offer(format(time, elapsed, 0, "total", "", 0,
+                    totalOpsPerSec, totalRowsPerSec, totalHistogram,
+                    totalSuccess, totalRetry, totalError, totalRows));
+        }
+    }
+
+    private void offer(String line) {
+        if (running && !queue.offer(line)) {
+            dropped.increment();
+        }
+    }
+
+    private String format(String time, double elapsed, int id, String name, String status, int batchSize,
+                          double opsPerSec, double rowsPerSec, Histogram h,
+                          long success, long retry, long error, long totalRows) {
+        if (format == Format.NDJSON) {
+            return String.format(Locale.ROOT,
+                    "{\"time\":\"%s\",\"elapsed_s\":%.3f,\"id\":%d,\"name\":\"%s\",\"status\":\"%s\","
+                    + "\"batch_size\":%d,\"ops_per_sec\":%.2f,\"rows_per_sec\":%.2f,"
+                    + "\"mean_ms\":%.3f,\"p50_ms\":%.3f,\"p95_ms\":%.3f,\"p99_ms\":%.3f,\"p999_ms\":%.3f,"
+                    + "\"max_ms\":%.3f,\"success\":%d,\"retry\":%d,\"error\":%d,\"total_rows\":%d}",
+                    time, elapsed, id, escapeJson(name), status, batchSize,
+                    opsPerSec, rowsPerSec,
+                    toMillis(h.getMean()),
+                    toMillis(h.getValueAtPercentile(.5)),
+                    toMillis(h.getValueAtPercentile(.95)),
+                    toMillis(h.getValueAtPercentile(.99)),
+                    toMillis(h.getValueAtPercentile(.999)),
+                    toMillis(h.getMax()),
+                    success, retry, error, totalRows);
+        }
+        return String.format(Locale.ROOT,
+                "%s,%.3f,%d,%s,%s,%d,%.2f,%.2f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%d",
+                time, elapsed, id, escapeCsv(name), status, batchSize,
+                opsPerSec, rowsPerSec,
+                toMillis(h.getMean()),
+                toMillis(h.getValueAtPercentile(.5)),
+                toMillis(h.getValueAtPercentile(.95)),
+                toMillis(h.getValueAtPercentile(.99)),
+                toMillis(h.getValueAtPercentile(.999)),
+                toMillis(h.getMax()),
+                success, retry, error, totalRows);
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append("\\u%04x".formatted((int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Take a final sample, then flush and close the file once all records are written.
+     */
+    @Override
+    public void close() {
+        scheduledExecutorService.shutdownNow();
+        sample();
+
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close metrics file", e);
+        }
+
+        if (dropped.sum() > 0) {
+            logger.warn("Dropped %d metrics records due to slow writes".formatted(dropped.sum()));
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package io.cockroachdb.batch.workload;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import io.cockroachdb.batch.Task;
+import io.cockroachdb.batch.jdbc.PoolMetrics;
+import io.cockroachdb.batch.util.Histogram;
 import io.cockroachdb.batch.util.Metrics;
+import io.cockroachdb.batch.util.PhaseTimer;
 
 /**
  * A call metrics console printer.
@@ -15,6 +23,8 @@ import io.cockroachdb.batch.util.Metrics;
  * @author Kai Niemi
  */
 public class MetricsPrinter {
+    private static final double POOL_WAIT_WARNING_RATIO = 0.2;
+
     private final ScheduledExecutorService scheduledExecutorService
             = Executors.newSingleThreadScheduledExecutor(r -> {
         Thread t = new Thread(r);
@@ -24,11 +34,34 @@ public class MetricsPrinter {
 
     private final WorkloadManager workloadManager;
 
+    private PoolMetrics poolMetrics;
+
+    private long lastPoolTimeouts;
+
+    private final Map<Task, long[]> lastTaskRows = new HashMap<>();
+
+    // Writer latency split by whether any delete task made progress in the interval
+    private final Histogram writerWhileDeleting = new Histogram();
+
+    private final Histogram writerWithoutDeletes = new Histogram();
+
+    private Histogram lastWriterHistogram = new Histogram();
+
+    private long lastDeletes;
+
+    private int deleteIntervals;
+
+    private int otherIntervals;
+
     public MetricsPrinter(WorkloadManager workloadManager) {
         this.workloadManager = workloadManager;
     }
 
-    private void printHeader() {
+    public void setPoolMetrics(PoolMetrics poolMetrics) {
+        this.poolMetrics = poolMetrics;
+    }
+
+    private static void printHeader() {
         System.out.printf("%4s %-25s %9s %9s %7s %7s | %5s %5s %5s %5s | %7s %7s %7s %s\n",
                 "id", "name", "op/s", "op/m", "time", "mean",
                 "p50", "p95", "p99", "p999",
@@ -90,27 +123,556 @@ public class MetricsPrinter {
                     m.getTransientFail(),
                     m.getNonTransientFail());
         }
+
+        printGauges(workloads);
+
+        printWriterLatency();
+
+        printPhaseBreakdown(workloads);
+
+        printInFlight(workloads);
+
+        printRetryDelay(workloads);
+
+        printThroughputTargets();
+
+        printPoolMetrics();
+
+        if (workloads.stream().anyMatch(workload -> workload.getMetrics().isOpenLoop())) {
+            printOpenLoopMetrics(workloads, limit);
+        }
+
+        if (workloads.stream().anyMatch(workload -> workload.getBatchSizeController().isAdaptive())) {
+            printBatchSizes(workloads, limit);
+        }
     }
 
-    public void printSummary(int batchSize) {
-        Metrics m = workloadManager.getMetricsAggregate(WorkloadStatus.COMPLETED);
+    /**
+     * Print metrics not tied to local workloads, such as merged from several
+     * load generators, in the same format as local workloads.
+     *
+     * @param metrics metrics by name in print order
+     */
+    public static void printMergedMetrics(Map<String, Metrics> metrics) {
+        AtomicInteger i = new AtomicInteger();
+
+        metrics.forEach((name, m) -> {
+            if (i.get() % 10 == 0) {
+                printHeader();
+            }
+            System.out.printf("%4d %-25s %9.1f %9.1f %7.1f %7.1f | %5.0f %5.0f %5.0f %5.0f | %7d %7d %7d\n",
+                    i.incrementAndGet(),
+                    name,
+                    m.getOpsPerSec(),
+                    m.getOpsPerMin(),
+                    m.getExecutionTimeSeconds(),
+                    m.getAvgTime(),
+                    m.getP50(),
+                    m.getP95(),
+                    m.getP99(),
+                    m.getP999(),
+                    m.getSuccess(),
+                    m.getTransientFail(),
+                    m.getNonTransientFail());
+        });
+
+        if (metrics.size() > 1) {
+            Metrics m = Metrics.aggregate(metrics.values());
+            System.out.printf("%4s %-25s %9.1f %9.1f %7.1f %7.1f | %5.0f %5.0f %5.0f %5.0f | %7d %7d %7d\n",
+                    "Σ",
+                    "",
+                    m.getOpsPerSec(),
+                    m.getOpsPerMin(),
+                    m.getExecutionTimeSeconds(),
+                    m.getAvgTime(),
+                    m.getP50(),
+                    m.getP95(),
+                    m.getP99(),
+                    m.getP999(),
+                    m.getSuccess(),
+                    m.getTransientFail(),
+                    m.getNonTransientFail());
+        }
+    }
+
+    private void printGauges(List<Workload<Task>> workloads) {
+        Map<Task, String> tasks = new LinkedHashMap<>();
+
+        workloads.stream()
+                .filter(workload -> workload.getTask() instanceof Instrumented)
+                .forEach(workload -> tasks.putIfAbsent(workload.getTask(),
+                        workload.getTaskName()));
+
+        tasks.forEach((task, name) -> {
+            Map<String, String> values = new LinkedHashMap<>(((Instrumented) task).getLabels());
+            ((Instrumented) task).getGauges().forEach((key, value) -> values.put(key, formatGauge(value)));
+            if (!values.isEmpty()) {
+                System.out.printf("%4s %-25s %s\n", "", name,
+                        values.entrySet().stream()
+                                .map(e -> e.getKey() + "=" + e.getValue())
+                                .collect(Collectors.joining(" ")));
+            }
+        });
+    }
+
+    // Fold the writer latency since the last call into the interval histograms
+    private synchronized boolean trackWriterLatency() {
+        List<Workload<Task>> workloads = workloadManager.getWorkloads();
+        if (workloads.stream().noneMatch(workload -> workload.getTask().getKind() == Task.Kind.DELETE)) {
+            return false;
+        }
+
+        Histogram writers = new Histogram();
+        long deletes = 0;
+        for (Workload<Task> workload : workloads) {
+            Metrics m = workload.getMetrics();
+            if (workload.getTask().getKind() == Task.Kind.WRITE) {
+                writers.add(m.getHistogram());
+            } else if (workload.getTask().getKind() == Task.Kind.DELETE) {
+                deletes += m.getSuccess();
+            }
+        }
+
+        Histogram interval = writers.delta(lastWriterHistogram);
+        if (interval.getCount() > 0) {
+            if (deletes > lastDeletes) {
+                writerWhileDeleting.add(interval);
+                deleteIntervals++;
+            } else {
+                writerWithoutDeletes.add(interval);
+                otherIntervals++;
+            }
+        }
+        lastWriterHistogram = writers;
+        lastDeletes = deletes;
+        return true;
+    }
+
+    private void printWriterLatency() {
+        if (!trackWriterLatency()) {
+            return;
+        }
+        System.out.printf("%4s %-25s p99 while deleting=%.2f (%d intervals) p99 without deletes=%.2f (%d intervals)\n",
+                "", "writer latency",
+                toMillis(writerWhileDeleting.getValueAtPercentile(.99)), deleteIntervals,
+                toMillis(writerWithoutDeletes.getValueAtPercentile(.99)), otherIntervals);
+    }
+
+    private static Map<PhaseTimer, String> phaseTimersByTask(List<Workload<Task>> workloads) {
+        Map<PhaseTimer, String> timers = new LinkedHashMap<>();
+        workloads.forEach(workload -> timers.putIfAbsent(workload.getPhaseTimer(),
+                workload.getTaskName()));
+        // Skip tasks not marking any phases, where all time is unattributed
+        timers.keySet().removeIf(timer -> Arrays.stream(PhaseTimer.Phase.values())
+                .filter(phase -> phase != PhaseTimer.Phase.OTHER)
+                .allMatch(phase -> timer.getHistogram(phase).getMax() == 0));
+        return timers;
+    }
+
+    private void printPhaseBreakdown(List<Workload<Task>> workloads) {
+        Map<PhaseTimer, String> timers = phaseTimersByTask(workloads);
+        if (timers.isEmpty()) {
+            return;
+        }
+
+        System.out.printf("%4s %-25s |", "", "phase mean/p99 (ms)");
+        for (PhaseTimer.Phase phase : PhaseTimer.Phase.values()) {
+            System.out.printf(" %13s |", phase.getLabel());
+        }
+        System.out.println();
+        System.out.println(new String(new char[127]).replace('\0', '-'));
+
+        timers.forEach((timer, name) -> {
+            System.out.printf("%4s %-25s |", "", name);
+            for (PhaseTimer.Phase phase : PhaseTimer.Phase.values()) {
+                Histogram h = timer.getWindowHistogram(phase);
+                System.out.printf(" %6.2f %6.2f |",
+                        toMillis(h.getMean()),
+                        toMillis(h.getValueAtPercentile(.99)));
+            }
+            System.out.println();
+        });
+    }
+
+    private void printInFlight(List<Workload<Task>> workloads) {
+        Map<String, long[]> depths = new LinkedHashMap<>();
+
+        workloads.stream()
+                .filter(workload -> workload.getInFlightLimit() > 1)
+                .forEach(workload -> {
+                    long[] depth = depths.computeIfAbsent(
+                            workload.getTaskName(), k -> new long[2]);
+                    depth[0] += workload.getMetrics().getInFlight();
+                    depth[1] += workload.getInFlightLimit();
+                });
+
+        depths.forEach((name, depth) -> System.out.printf("%4s %-25s in-flight=%d/%d (%.0f%%)\n",
+                "", name, depth[0], depth[1], depth[0] * 100.0 / depth[1]));
+    }
+
+    private void printRetryDelay(List<Workload<Task>> workloads) {
+        Histogram delay = new Histogram();
+        double workerSeconds = 0;
+        for (Workload<Task> workload : workloads) {
+            Metrics m = workload.getMetrics();
+            delay.add(m.getRetryDelayHistogram());
+            workerSeconds += m.getExecutionTimeSeconds();
+        }
+        if (delay.getCount() == 0) {
+            return;
+        }
+
+        RetryBudget budget = workloadManager.getRetryBudget();
+        System.out.printf("%4s %-25s backoffs=%d mean=%.1f p99=%.1f total=%.1fs (%.1f%% of worker time) "
+                          + "budget-throttled=%d\n",
+                "", "retry delay",
+                delay.getCount(),
+                toMillis(delay.getMean()),
+                toMillis(delay.getValueAtPercentile(.99)),
+                delay.getSum() / 1_000_000_000.0,
+                workerSeconds > 0 ? delay.getSum() / 10_000_000.0 / workerSeconds : 0,
+                budget.getThrottled());
+    }
+
+    private static Map<Task, String> taskNames(List<Workload<Task>> workloads) {
+        Map<Task, String> names = new LinkedHashMap<>();
+        workloads.forEach(workload -> names.putIfAbsent(workload.getTask(),
+                workload.getTaskName()));
+        return names;
+    }
+
+    private static long taskRows(List<Workload<Task>> workloads, Task task) {
+        return workloads.stream()
+                .filter(workload -> workload.getTask() == task)
+                .mapToLong(workload -> workload.getMetrics().getRows())
+                .sum();
+    }
+
+    private void printThroughputTargets() {
+        Map<Task, ThroughputGovernor> governors = workloadManager.getThroughputGovernors();
+        if (governors.isEmpty()) {
+            return;
+        }
+
+        // Achieved rate over the reporting interval, including finished workers
+        List<Workload<Task>> workloads = workloadManager.getWorkloads();
+        Map<Task, String> names = taskNames(workloads);
+        long now = System.nanoTime();
+
+        names.forEach((task, name) -> {
+            ThroughputGovernor governor = governors.get(task);
+            if (governor == null) {
+                return;
+            }
+            long rows = taskRows(workloads, task);
+            long[] last = lastTaskRows.put(task, new long[] {rows, now});
+            if (last == null) {
+                return;
+            }
+            double achieved = (rows - last[0]) / Math.max(1e-9, (now - last[1]) / 1_000_000_000.0);
+            System.out.printf("%4s %-25s target=%.0f rows/s achieved=%.0f rows/s (%.1f%%)\n",
+                    "", name,
+                    governor.getTargetRowsPerSec(),
+                    achieved,
+                    achieved * 100 / governor.getTargetRowsPerSec());
+        });
+    }
+
+    private void printPoolMetrics() {
+        if (poolMetrics == null || !poolMetrics.isAvailable()) {
+            return;
+        }
+
+        Histogram acquire = poolMetrics.getAcquireWindowHistogram();
+        Histogram usage = poolMetrics.getUsageWindowHistogram();
+
+        System.out.printf("%4s %-25s active=%d idle=%d total=%d max=%d pending=%d "
+                          + "acquire-mean=%.2f acquire-p99=%.2f usage-mean=%.1f usage-p99=%.1f timeouts=%d\n",
+                "", "connection pool",
+                poolMetrics.getActiveConnections(),
+                poolMetrics.getIdleConnections(),
+                poolMetrics.getTotalConnections(),
+                poolMetrics.getMaxConnections(),
+                poolMetrics.getPendingThreads(),
+                toMillis(acquire.getMean()),
+                toMillis(acquire.getValueAtPercentile(.99)),
+                toMillis(usage.getMean()),
+                toMillis(usage.getValueAtPercentile(.99)),
+                poolMetrics.getTimeouts());
+
+        // Flag the pool rather than the database as the bottleneck
+        long timeouts = poolMetrics.getTimeouts();
+        if (timeouts > lastPoolTimeouts) {
+            System.out.printf("WARNING: %d connection acquire timeouts since last report - "
+                              + "the pool is the bottleneck, consider raising --pool-size or lowering --concurrency\n",
+                    timeouts - lastPoolTimeouts);
+        }
+        lastPoolTimeouts = timeouts;
+
+        if (poolMetrics.getPendingThreads() > 0
+            && poolMetrics.getActiveConnections() >= poolMetrics.getMaxConnections()) {
+            System.out.printf("WARNING: connection pool exhausted with %d threads waiting - "
+                              + "the pool is the bottleneck, consider raising --pool-size (%d)\n",
+                    poolMetrics.getPendingThreads(), poolMetrics.getMaxConnections());
+        }
+
+        Histogram calls = workloadManager.getMetricsAggregate(WorkloadStatus.RUNNING).getWindowHistogram();
+        if (calls.getCount() > 0 && acquire.getMean() > calls.getMean() * POOL_WAIT_WARNING_RATIO) {
+            System.out.printf("WARNING: connection acquire time is %.0f%% of mean batch time - "
+                              + "the pool is the bottleneck\n",
+                    acquire.getMean() * 100 / calls.getMean());
+        }
+    }
+
+    private static String formatGauge(Number value) {
+        return value instanceof Double || value instanceof Float
+                ? "%.1f".formatted(value.doubleValue())
+                : value.toString();
+    }
+
+    private void printOpenLoopMetrics(List<Workload<Task>> workloads, int limit) {
+        System.out.printf("%4s %-25s | %9s %9s %9s | %9s %9s %9s | %9s\n",
+                "id", "name",
+                "rsp mean", "rsp p99", "rsp p999",
+                "svc mean", "svc p99", "svc p999",
+                "backlog");
+        System.out.println(new String(new char[113]).replace('\0', '-'));
+
+        workloads.stream()
+                .limit(limit)
+                .filter(workload -> workload.getMetrics().isOpenLoop())
+                .forEach(workload -> {
+                    Metrics m = workload.getMetrics();
+                    Histogram rsp = m.getWindowHistogram();
+                    Histogram svc = m.getServiceWindowHistogram();
+                    System.out.printf("%4d %-25s | %9.1f %9.1f %9.1f | %9.1f %9.1f %9.1f | %9d\n",
+                            workload.getId(),
+                            workload.getName(),
+                            toMillis(rsp.getMean()),
+                            toMillis(rsp.getValueAtPercentile(.99)),
+                            toMillis(rsp.getValueAtPercentile(.999)),
+                            toMillis(svc.getMean()),
+                            toMillis(svc.getValueAtPercentile(.99)),
+                            toMillis(svc.getValueAtPercentile(.999)),
+                            m.getBacklog());
+                });
+    }
+
+    private void printBatchSizes(List<Workload<Task>> workloads, int limit) {
+        System.out.printf("%4s %-25s | %7s %7s %9s | %s\n",
+                "id", "name", "batch", "best", "rows/s", "trajectory");
+        System.out.println(new String(new char[90]).replace('\0', '-'));
+
+        workloads.stream()
+                .limit(limit)
+                .filter(workload -> workload.getBatchSizeController().isAdaptive())
+                .forEach(workload -> {
+                    BatchSizeController controller = workload.getBatchSizeController();
+                    System.out.printf("%4d %-25s | %7d %7d %9.1f | %s\n",
+                            workload.getId(),
+                            workload.getName(),
+                            controller.getBatchSize(),
+                            controller.getRecommendedBatchSize(),
+                            workload.getMetrics().getRowsPerSec(),
+                            controller.getTrajectory()
+                                    .stream()
+                                    .map(String::valueOf)
+                                    .collect(Collectors.joining(" → ")));
+                });
+    }
+
+    /**
+     * Print the summary totals and latency distribution of aggregated metrics.
+     *
+     * @param m the metrics to summarize
+     */
+    public static void printTotals(Metrics m) {
+        Histogram h = m.getHistogram();
+
+        double avgBatchSize = m.getSuccess() > 0 ? (double) m.getRows() / m.getSuccess() : 0;
 
         System.out.println("=== Summary ===");
         System.out.printf("Total batches: %,d\n",
                 m.getSuccess());
-        System.out.printf("Total rows inserted: %,d\n",
-                m.getSuccess() * batchSize);
+        System.out.printf("Total rows processed: %,d\n",
+                m.getRows());
         System.out.printf("Total failed batches: %,d\n",
                 m.getNonTransientFail());
         System.out.printf("Total retried batches: %,d\n",
                 m.getTransientFail());
+        System.out.printf("Total rows processed/sec: %,.1f\n",
+                m.getRowsPerSec());
         System.out.printf("Avg batch latency: %5.2f ms\n",
-                m.getAvgTime());
+                toMillis(h.getMean()));
+        System.out.printf("Avg rows per batch: %.1f\n",
+                avgBatchSize);
         System.out.printf("Avg per-row latency: %5.4f ms\n",
-                m.getAvgTime() / batchSize);
+                avgBatchSize > 0 ? toMillis(h.getMean()) / avgBatchSize : 0);
+        System.out.printf("P50 batch time: %.2f ms\n",
+                toMillis(h.getValueAtPercentile(.5)));
+        System.out.printf("P95 batch time: %.2f ms\n",
+                toMillis(h.getValueAtPercentile(.95)));
+        System.out.printf("P99 batch time: %.2f ms\n",
+                toMillis(h.getValueAtPercentile(.99)));
+        System.out.printf("P999 batch time: %.2f ms\n",
+                toMillis(h.getValueAtPercentile(.999)));
         System.out.printf("Min batch time: %.2f ms\n",
-                m.getMinTime());
+                toMillis(h.getMin()));
         System.out.printf("Max batch time: %.2f ms\n",
-                m.getMaxTime());
+                toMillis(h.getMax()));
+
+        if (m.isOpenLoop()) {
+            Histogram svc = m.getServiceTimeHistogram();
+            System.out.println("(open-loop: batch times above are response times from intended start)");
+            System.out.printf("Avg service time: %5.2f ms\n",
+                    toMillis(svc.getMean()));
+            System.out.printf("P50 service time: %.2f ms\n",
+                    toMillis(svc.getValueAtPercentile(.5)));
+            System.out.printf("P99 service time: %.2f ms\n",
+                    toMillis(svc.getValueAtPercentile(.99)));
+            System.out.printf("P999 service time: %.2f ms\n",
+                    toMillis(svc.getValueAtPercentile(.999)));
+            System.out.printf("Max service time: %.2f ms\n",
+                    toMillis(svc.getMax()));
+        }
+    }
+
+    private static void printTaskThroughput(List<Workload<Task>> workloads) {
+        Map<Task, String> names = taskNames(workloads);
+        if (names.size() < 2) {
+            return;
+        }
+
+        // Side by side comparison of tasks, such as the same task with different key strategies
+        System.out.println("Throughput by task:");
+        names.forEach((task, name) -> {
+            Histogram h = new Histogram();
+            double seconds = 0;
+            for (Workload<Task> workload : workloads) {
+                if (workload.getTask() == task) {
+                    Metrics wm = workload.getMetrics();
+                    h.add(wm.getHistogram());
+                    seconds = Math.max(seconds, wm.getExecutionTimeSeconds());
+                }
+            }
+            String labels = task instanceof Instrumented instrumented
+                    ? instrumented.getLabels().entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue())
+                    .collect(Collectors.joining(" "))
+                    : "";
+            System.out.printf("  %-25s %,12.1f rows/s %,10.1f batches/s p99 %8.2f ms %s\n",
+                    name,
+                    taskRows(workloads, task) / Math.max(1, seconds),
+                    h.getCount() / Math.max(1, seconds),
+                    toMillis(h.getValueAtPercentile(.99)),
+                    labels);
+        });
+    }
+
+    public void printSummary() {
+        Metrics m = workloadManager.getMetricsAggregate(WorkloadStatus.COMPLETED);
+
+        printTotals(m);
+
+        Map<Task, ThroughputGovernor> governors = workloadManager.getThroughputGovernors();
+        if (!governors.isEmpty()) {
+            List<Workload<Task>> completed = workloadManager.getWorkloads(WorkloadStatus.COMPLETED);
+            taskNames(completed).forEach((task, name) -> {
+                ThroughputGovernor governor = governors.get(task);
+                if (governor == null) {
+                    return;
+                }
+                double seconds = completed.stream()
+                        .filter(workload -> workload.getTask() == task)
+                        .mapToDouble(workload -> workload.getMetrics().getExecutionTimeSeconds())
+                        .max()
+                        .orElse(0);
+                double achieved = taskRows(completed, task) / Math.max(1, seconds);
+                System.out.printf("Throughput of %s: %,.0f rows/s of target %,.0f rows/s (%.1f%%)\n",
+                        name, achieved, governor.getTargetRowsPerSec(),
+                        achieved * 100 / governor.getTargetRowsPerSec());
+            });
+        }
+
+        printTaskThroughput(workloadManager.getWorkloads(WorkloadStatus.COMPLETED));
+
+        if (trackWriterLatency()) {
+            System.out.printf("Writer p99 while deleting: %.2f ms (%d intervals)\n",
+                    toMillis(writerWhileDeleting.getValueAtPercentile(.99)), deleteIntervals);
+            System.out.printf("Writer p99 without deletes: %.2f ms (%d intervals)\n",
+                    toMillis(writerWithoutDeletes.getValueAtPercentile(.99)), otherIntervals);
+        }
+
+        Histogram retryDelay = m.getRetryDelayHistogram();
+        if (retryDelay.getCount() > 0) {
+            double workerSeconds = workloadManager.getWorkloads(WorkloadStatus.COMPLETED)
+                    .stream()
+                    .mapToDouble(workload -> workload.getMetrics().getExecutionTimeSeconds())
+                    .sum();
+            System.out.printf("Total retry delay: %.1f s (%.1f%% of worker time)\n",
+                    retryDelay.getSum() / 1_000_000_000.0,
+                    workerSeconds > 0 ? retryDelay.getSum() / 10_000_000.0 / workerSeconds : 0);
+            System.out.printf("Avg retry delay: %.1f ms\n",
+                    toMillis(retryDelay.getMean()));
+            System.out.printf("P99 retry delay: %.1f ms\n",
+                    toMillis(retryDelay.getValueAtPercentile(.99)));
+            System.out.printf("Retries delayed by budget: %,d of %,d\n",
+                    workloadManager.getRetryBudget().getThrottled(),
+                    workloadManager.getRetryBudget().getAcquired());
+        }
+
+        Map<PhaseTimer, String> timers = phaseTimersByTask(
+                workloadManager.getWorkloads(WorkloadStatus.COMPLETED));
+        timers.forEach((timer, name) -> {
+            System.out.printf("Phase breakdown for %s (mean / p99):\n", name);
+            double total = Arrays.stream(PhaseTimer.Phase.values())
+                    .mapToDouble(phase -> timer.getHistogram(phase).getMean())
+                    .sum();
+            for (PhaseTimer.Phase phase : PhaseTimer.Phase.values()) {
+                Histogram ph = timer.getHistogram(phase);
+                System.out.printf("  %-6s %8.2f ms %8.2f ms %5.1f%%\n",
+                        phase.getLabel(),
+                        toMillis(ph.getMean()),
+                        toMillis(ph.getValueAtPercentile(.99)),
+                        total > 0 ? ph.getMean() * 100 / total : 0);
+            }
+        });
+
+        if (poolMetrics != null && poolMetrics.isAvailable()) {
+            Histogram acquire = poolMetrics.getAcquireTimeHistogram();
+            Histogram usage = poolMetrics.getUsageTimeHistogram();
+            System.out.printf("Avg connection acquire time: %.2f ms\n",
+                    toMillis(acquire.getMean()));
+            System.out.printf("P99 connection acquire time: %.2f ms\n",
+                    toMillis(acquire.getValueAtPercentile(.99)));
+            System.out.printf("Max connection acquire time: %.2f ms\n",
+                    toMillis(acquire.getMax()));
+            System.out.printf("Avg connection usage time: %.1f ms\n",
+                    toMillis(usage.getMean()));
+            System.out.printf("Connections created: %,d (avg %.1f ms)\n",
+                    poolMetrics.getCreationTimeHistogram().getCount(),
+                    toMillis(poolMetrics.getCreationTimeHistogram().getMean()));
+            System.out.printf("Connection acquire timeouts: %,d\n",
+                    poolMetrics.getTimeouts());
+        }
+
+        List<Integer> recommended = workloadManager.getWorkloads(WorkloadStatus.COMPLETED)
+                .stream()
+                .map(Workload::getBatchSizeController)
+                .filter(BatchSizeController::isAdaptive)
+                .map(BatchSizeController::getRecommendedBatchSize)
+                .sorted()
+                .toList();
+        if (!recommended.isEmpty()) {
+            System.out.printf("Recommended batch size: %d (median of %d adaptive workers, range %d-%d)\n",
+                    recommended.get(recommended.size() / 2),
+                    recommended.size(),
+                    recommended.get(0),
+                    recommended.get(recommended.size() - 1));
+        }
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / 1_000_000.0;
     }
 }
@@ -0,0 +1,92 @@
+package io.cockroachdb.batch.workload;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A token bucket limiting the rate of retries across all workloads,
+ * so that a burst of transient failures doesn't turn into a retry
+ * storm amplifying the load on an already struggling cluster.
+ * <p>
+ * Each retry takes one token, and tokens are refilled at a fixed rate
+ * up to a burst capacity. When the bucket is empty, a retry reserves the
+ * next token and waits until it's due, which queues retrying workers
+ * fairly without spinning.
+ *
+ * @author Kai Niemi
+ */
+public class RetryBudget {
+    public static RetryBudget unlimited() {
+        return new RetryBudget(0, 0);
+    }
+
+    private final double ratePerNanos;
+
+    private final double capacity;
+
+    private final LongAdder acquired = new LongAdder();
+
+    private final LongAdder throttled = new LongAdder();
+
+    private double tokens;
+
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * @param ratePerSec retries per second across all workloads, 0 for unlimited
+     * @param capacity   max number of retries in a burst
+     */
+    public RetryBudget(double ratePerSec, double capacity) {
+        if (ratePerSec < 0 || capacity < 0) {
+            throw new IllegalArgumentException("Retry budget rate and capacity must be >= 0");
+        }
+        this.ratePerNanos = ratePerSec / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+    }
+
+    public boolean isUnlimited() {
+        return ratePerNanos == 0;
+    }
+
+    /**
+     * Take a token for a retry, waiting for one to be refilled if the budget is exhausted.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        acquired.increment();
+
+        if (isUnlimited()) {
+            return;
+        }
+
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            throttled.increment();
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNanos);
+        lastRefill = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / ratePerNanos);
+    }
+
+    /**
+     * @return number of retries that passed through the budget
+     */
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    /**
+     * @return number of retries delayed by an exhausted budget
+     */
+    public long getThrottled() {
+        return throttled.sum();
+    }
+}
@@ -0,0 +1,87 @@
+package io.cockroachdb.batch.workload;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Backoff policy for the delay before retrying after a transient failure.
+ * <p>
+ * Jittered policies spread out retries of workers failing at the same time,
+ * such as during a cluster-wide hiccup, rather than having them retry in
+ * lockstep. Policies are stateless and may be shared across workers.
+ *
+ * @author Kai Niemi
+ */
+@FunctionalInterface
+public interface RetryPolicy {
+    enum Strategy {
+        /**
+         * Retry immediately.
+         */
+        NONE,
+        /**
+         * Capped exponential backoff without jitter.
+         */
+        EXPONENTIAL,
+        /**
+         * Random delay between zero and the capped exponential backoff.
+         */
+        FULL,
+        /**
+         * Random delay between the base and three times the previous delay, capped.
+         */
+        DECORRELATED;
+
+        public static Strategy parse(String name) {
+            return valueOf(name.toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    static RetryPolicy of(Strategy strategy, long baseMillis, long capMillis) {
+        if (baseMillis < 0 || capMillis < baseMillis) {
+            throw new IllegalArgumentException("Expected 0 <= base <= cap");
+        }
+        return switch (strategy) {
+            case NONE -> none();
+            case EXPONENTIAL -> exponential(baseMillis, capMillis);
+            case FULL -> fullJitter(baseMillis, capMillis);
+            case DECORRELATED -> decorrelatedJitter(baseMillis, capMillis);
+        };
+    }
+
+    static RetryPolicy none() {
+        return (attempt, previousDelayMillis) -> 0;
+    }
+
+    static RetryPolicy exponential(long baseMillis, long capMillis) {
+        return (attempt, previousDelayMillis) -> backoff(baseMillis, capMillis, attempt);
+    }
+
+    static RetryPolicy fullJitter(long baseMillis, long capMillis) {
+        return (attempt, previousDelayMillis) -> {
+            long backoff = backoff(baseMillis, capMillis, attempt);
+            return backoff > 0 ? ThreadLocalRandom.current().nextLong(backoff + 1) : 0;
+        };
+    }
+
+    static RetryPolicy decorrelatedJitter(long baseMillis, long capMillis) {
+        return (attempt, previousDelayMillis) -> {
+            long upper = Math.max(baseMillis, Math.min(capMillis, previousDelayMillis * 3));
+            return upper > baseMillis ? ThreadLocalRandom.current().nextLong(baseMillis, upper + 1) : baseMillis;
+        };
+    }
+
+    private static long backoff(long baseMillis, long capMillis, int attempt) {
+        int exp = Math.min(Math.max(attempt - 1, 0), 30);
+        return Math.min(capMillis, baseMillis << exp);
+    }
+
+    /**
+     * Compute the delay before the next retry.
+     *
+     * @param attempt             number of consecutive failed attempts, starting at 1
+     * @param previousDelayMillis the previous delay in the sequence, or 0 on the first retry
+     * @return the delay in millis
+     */
+    long getDelayMillis(int attempt, long previousDelayMillis);
+}
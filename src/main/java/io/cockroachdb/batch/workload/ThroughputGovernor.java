@@ -0,0 +1,91 @@
+package io.cockroachdb.batch.workload;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the throughput of a task at a target rate in rows per second,
+ * enforced across all of its workers.
+ * <p>
+ * Rather than sharing one token bucket, each worker paces its own calls
+ * through a {@link Stripe} allotted an equal share of the target. Stripes
+ * are owned by a single thread and only share the number of active stripes,
+ * so pacing is free of lock contention regardless of concurrency. The share
+ * is rebalanced as workers start and finish.
+ *
+ * @author Kai Niemi
+ */
+public class ThroughputGovernor {
+    private final double targetRowsPerSec;
+
+    private final AtomicInteger stripes = new AtomicInteger();
+
+    /**
+     * @param targetRowsPerSec the target rate across all workers, must be > 0
+     */
+    public ThroughputGovernor(double targetRowsPerSec) {
+        if (targetRowsPerSec <= 0) {
+            throw new IllegalArgumentException("Target rows/sec must be > 0");
+        }
+        this.targetRowsPerSec = targetRowsPerSec;
+    }
+
+    public double getTargetRowsPerSec() {
+        return targetRowsPerSec;
+    }
+
+    /**
+     * @return a new stripe for a worker, to be released when the worker is done
+     */
+    public Stripe newStripe() {
+        stripes.incrementAndGet();
+        return new Stripe();
+    }
+
+    /**
+     * Per-worker pacing of calls at the worker's share of the target rate.
+     * Not thread-safe, a stripe is owned by one worker thread.
+     */
+    public class Stripe {
+        private long nextFreeTime;
+
+        private boolean released;
+
+        private Stripe() {
+        }
+
+        /**
+         * Wait until a call with a given number of rows is within the worker's share.
+         * The cost of a call is paid by the next call, so the first call is not delayed.
+         *
+         * @param rows the number of rows in the next call
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public void acquire(int rows) throws InterruptedException {
+            final double nanosPerRow = TimeUnit.SECONDS.toNanos(1) * Math.max(1, stripes.get()) / targetRowsPerSec;
+
+            final long now = System.nanoTime();
+            if (nextFreeTime < now) {
+                // Idle time is not saved up for bursts
+                nextFreeTime = now;
+            }
+
+            final long waitNanos = nextFreeTime - now;
+            nextFreeTime += (long) (rows * nanosPerRow);
+
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+
+        /**
+         * Release the stripe, handing its share to the remaining workers.
+         */
+        public void release() {
+            if (!released) {
+                released = true;
+                stripes.decrementAndGet();
+            }
+        }
+    }
+}
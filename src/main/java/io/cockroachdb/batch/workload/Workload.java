@@ -6,6 +6,7 @@ import java.util.Optional;
 import java.util.concurrent.Future;
 
 import io.cockroachdb.batch.util.Metrics;
+import io.cockroachdb.batch.util.PhaseTimer;
 import io.cockroachdb.batch.util.Problem;
 
 /**
@@ -17,36 +18,82 @@ import io.cockroachdb.batch.util.Problem;
 public class Workload<T> {
     private final Integer id;
 
+    private final String taskName;
+
     private final String name;
 
+    private final T task;
+
     private final Future<T> future;
 
     private final Metrics metrics;
 
     private final LinkedList<Problem> problems;
 
+    private final BatchSizeController batchSizeController;
+
+    private final PhaseTimer phaseTimer;
+
+    private final int inFlightLimit;
+
     private boolean failed;
 
     Workload(Integer id,
+             String taskName,
              String name,
+             T task,
              Future<T> future,
              Metrics metrics,
-             LinkedList<Problem> problems) {
+             LinkedList<Problem> problems,
+             BatchSizeController batchSizeController,
+             PhaseTimer phaseTimer,
+             int inFlightLimit) {
         this.id = id;
+        this.taskName = taskName;
         this.name = name;
+        this.task = task;
         this.future = future;
         this.metrics = metrics;
         this.problems = problems;
+        this.batchSizeController = batchSizeController;
+        this.phaseTimer = phaseTimer;
+        this.inFlightLimit = inFlightLimit;
     }
 
     public Integer getId() {
         return id;
     }
 
+    /**
+     * @return the name of the task instance, shared by all its workloads
+     */
+    public String getTaskName() {
+        return taskName;
+    }
+
     public String getName() {
         return name;
     }
 
+    public T getTask() {
+        return task;
+    }
+
+    public BatchSizeController getBatchSizeController() {
+        return batchSizeController;
+    }
+
+    public PhaseTimer getPhaseTimer() {
+        return phaseTimer;
+    }
+
+    /**
+     * @return max number of batches in flight concurrently, 1 if strictly serial
+     */
+    public int getInFlightLimit() {
+        return inFlightLimit;
+    }
+
     public WorkloadStatus getStatus() {
         if (failed) {
             return WorkloadStatus.FAILED;
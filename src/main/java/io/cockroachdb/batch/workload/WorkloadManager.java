@@ -1,16 +1,19 @@
 package io.cockroachdb.batch.workload;
 
 import java.sql.SQLException;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 
 import org.slf4j.Logger;
@@ -18,7 +21,9 @@ import org.slf4j.LoggerFactory;
 
 import io.cockroachdb.batch.Task;
 import io.cockroachdb.batch.jdbc.DataAccessException;
+import io.cockroachdb.batch.util.Assert;
 import io.cockroachdb.batch.util.Metrics;
+import io.cockroachdb.batch.util.PhaseTimer;
 import io.cockroachdb.batch.util.Problem;
 
 /**
@@ -28,15 +33,6 @@ import io.cockroachdb.batch.util.Problem;
  * @author Kai Niemi
  */
 public class WorkloadManager {
-    private static void backoffDelayWithJitter(int calls) {
-        try {
-            TimeUnit.MILLISECONDS.sleep(
-                    Math.min((long) (Math.pow(2, calls) + Math.random() * 1000), 5000));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-    }
-
     private static Throwable getMostSpecificCause(Throwable original) {
         Throwable rootCause = getRootCause(original);
         return rootCause != null ? rootCause : original;
@@ -65,72 +61,352 @@ public class WorkloadManager {
 
     private final List<Workload<Task>> workloads = new LinkedList<>();
 
+    private final Map<Task, PhaseTimer> phaseTimers = new ConcurrentHashMap<>();
+
+    private final Map<Task, ThroughputGovernor> throughputGovernors = new ConcurrentHashMap<>();
+
     private final ExecutorService executorService;
 
+    private RetryPolicy retryPolicy = RetryPolicy.fullJitter(20, 5000);
+
+    private RetryBudget retryBudget = RetryBudget.unlimited();
+
     public WorkloadManager(ExecutorService executorService) {
         this.executorService = executorService;
     }
 
+    /**
+     * @param retryPolicy backoff policy for retries after transient failures
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @param retryBudget retry rate limit shared across all workloads
+     */
+    public void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Hold the throughput of a task at a target rate across all its workers.
+     * Must be set before submitting the task's workloads.
+     *
+     * @param task             the task
+     * @param targetRowsPerSec the target rate in rows per second
+     */
+    public void setThroughputTarget(Task task, double targetRowsPerSec) {
+        throughputGovernors.put(task, new ThroughputGovernor(targetRowsPerSec));
+    }
+
+    /**
+     * @return throughput governors by task, for tasks with a throughput target
+     */
+    public Map<Task, ThroughputGovernor> getThroughputGovernors() {
+        return Map.copyOf(throughputGovernors);
+    }
+
     public void submitWorkload(Task task, int batchSize,
                                Predicate<Integer> completion, String name) {
-        final Metrics metrics = Metrics.empty();
+        submitWorkload(task, BatchSizeController.fixed(batchSize), completion, name, ArrivalSchedule.closedLoop());
+    }
 
-        final LinkedList<Problem> problems = new LinkedList<>();
+    public void submitWorkload(Task task, BatchSizeController batchSizeController,
+                               Predicate<Integer> completion, String name,
+                               ArrivalSchedule schedule) {
+        submitWorkload(task, batchSizeController, completion, name, name, schedule, 1);
+    }
+
+    /**
+     * Submit a workload running a task repeatedly until the completion predicate fails.
+     *
+     * @param task                the task to run
+     * @param batchSizeController source of the batch size for each call
+     * @param completion          predicate tested before each call with the call count
+     * @param taskName            the task name shared by all workloads of the task
+     * @param name                the workload name
+     * @param schedule            the arrival schedule
+     * @param inFlightLimit       max number of batches in flight concurrently, 1 for strictly serial calls
+     */
+    public void submitWorkload(Task task, BatchSizeController batchSizeController,
+                               Predicate<Integer> completion, String taskName, String name,
+                               ArrivalSchedule schedule, int inFlightLimit) {
+        Assert.isTrue(inFlightLimit > 0, "inFlightLimit must be > 0");
+
+        // Phase times are collected per task across its workers
+        final PhaseTimer phaseTimer = phaseTimers.computeIfAbsent(task, t -> new PhaseTimer());
 
-        final Future<Task> future = executorService.submit(() -> {
-            AtomicInteger totalCalls = new AtomicInteger();
-            AtomicInteger fails = new AtomicInteger();
+        final ThroughputGovernor governor = throughputGovernors.get(task);
 
-            while (completion.test(totalCalls.incrementAndGet())) {
-                if (Thread.interrupted()) {
-                    logger.warn("Thread interrupted - bailing out");
-                    break;
+        final Worker worker = new Worker(task, batchSizeController, name, schedule, phaseTimer,
+                governor != null ? governor.newStripe() : null);
+
+        final Future<Task> future = executorService.submit(() -> inFlightLimit > 1
+                ? worker.runPipelined(completion, inFlightLimit)
+                : worker.runSerial(completion));
+
+        workloads.add(new Workload<>(monotonicId.incrementAndGet(), taskName, name, task, future, worker.metrics,
+                worker.problems, batchSizeController, phaseTimer, inFlightLimit));
+    }
+
+    /**
+     * Consecutive failures and the previous backoff delay of one worker
+     * or pipelined lane, only accessed by the thread executing its calls.
+     */
+    private static class RetryState {
+        int attempt;
+
+        long previousDelay;
+
+        void reset() {
+            attempt = 0;
+            previousDelay = 0;
+        }
+    }
+
+    /**
+     * Runs the calls of one workload, either strictly serial on the submitting
+     * thread or pipelined across a fixed set of sibling lanes.
+     */
+    private class Worker {
+        private final Task task;
+
+        private final BatchSizeController batchSizeController;
+
+        private final String name;
+
+        private final ArrivalSchedule schedule;
+
+        private final PhaseTimer phaseTimer;
+
+        private final ThroughputGovernor.Stripe throttle;
+
+        private final Metrics metrics = Metrics.empty();
+
+        private final LinkedList<Problem> problems = new LinkedList<>();
+
+        private final AtomicInteger totalCalls = new AtomicInteger();
+
+        Worker(Task task, BatchSizeController batchSizeController, String name,
+               ArrivalSchedule schedule, PhaseTimer phaseTimer, ThroughputGovernor.Stripe throttle) {
+            this.task = task;
+            this.batchSizeController = batchSizeController;
+            this.name = name;
+            this.schedule = schedule;
+            this.phaseTimer = phaseTimer;
+            this.throttle = throttle;
+        }
+
+        /**
+         * Get the batch size for the next call and wait for it to fit
+         * within the throughput target, if any.
+         */
+        private int acquireBatch() throws InterruptedException {
+            final int batchSize = batchSizeController.getBatchSize();
+            if (throttle != null) {
+                throttle.acquire(batchSize);
+            }
+            return batchSize;
+        }
+
+        private void release() {
+            if (throttle != null) {
+                throttle.release();
+            }
+        }
+
+        Task runSerial(Predicate<Integer> completion) {
+            final PhaseTimer.Tracker phaseTracker = phaseTimer.attach();
+
+            final RetryState retryState = new RetryState();
+
+            try {
+                while (completion.test(totalCalls.incrementAndGet())) {
+                    if (Thread.interrupted()) {
+                        logger.warn("Thread interrupted - bailing out");
+                        break;
+                    }
+
+                    final long intendedTime;
+                    final int batchSize;
+                    try {
+                        intendedTime = schedule.awaitNext();
+                        batchSize = acquireBatch();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        logger.warn("Thread interrupted - bailing out");
+                        break;
+                    }
+
+                    if (schedule.isOpenLoop()) {
+                        metrics.setBacklog(schedule.getBacklog());
+                    }
+
+                    executeOne(intendedTime, batchSize, phaseTracker, retryState);
+                }
+            } finally {
+                PhaseTimer.detach();
+                release();
+            }
+            return task;
+        }
+
+        /**
+         * Keep up to a given number of batches in flight by dispatching calls to a
+         * fixed set of virtual thread lanes sharing the worker's budget. Lanes are
+         * long-lived, so thread-bound state like sticky sessions and the retry
+         * backoff sequence is kept per lane.
+         * Latency is measured per batch by the lane executing it, and in open-loop
+         * mode from the intended start time, which includes any wait for a lane.
+         */
+        Task runPipelined(Predicate<Integer> completion, int inFlightLimit) {
+            final Semaphore permits = new Semaphore(inFlightLimit);
+
+            final AtomicReference<Throwable> fatal = new AtomicReference<>();
+
+            final ThreadLocal<PhaseTimer.Tracker> phaseTrackers = ThreadLocal.withInitial(phaseTimer::attach);
+
+            final ThreadLocal<RetryState> retryStates = ThreadLocal.withInitial(RetryState::new);
+
+            final ExecutorService lanes = Executors.newFixedThreadPool(inFlightLimit,
+                    Thread.ofVirtual().name(name + " lane-", 1).factory());
+
+            try {
+                while (fatal.get() == null && completion.test(totalCalls.incrementAndGet())) {
+                    if (Thread.interrupted()) {
+                        logger.warn("Thread interrupted - bailing out");
+                        break;
+                    }
+
+                    final long intendedTime;
+                    final int batchSize;
+                    try {
+                        intendedTime = schedule.awaitNext();
+                        batchSize = acquireBatch();
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        logger.warn("Thread interrupted - bailing out");
+                        break;
+                    }
+
+                    if (schedule.isOpenLoop()) {
+                        metrics.setBacklog(schedule.getBacklog());
+                    }
+
+                    metrics.setInFlight(inFlightLimit - permits.availablePermits());
+
+                    lanes.execute(() -> {
+                        try {
+                            executeOne(intendedTime, batchSize, phaseTrackers.get(), retryStates.get());
+                        } catch (Throwable ex) {
+                            fatal.compareAndSet(null, ex);
+                        } finally {
+                            permits.release();
+                            metrics.setInFlight(inFlightLimit - permits.availablePermits());
+                        }
+                    });
                 }
+            } finally {
+                // Let batches in flight complete
+                lanes.close();
+                metrics.setInFlight(0);
+                release();
+            }
 
-                final Instant invocationTime = Instant.now();
+            Throwable ex = fatal.get();
+            if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            } else if (ex instanceof Error) {
+                throw (Error) ex;
+            } else if (ex != null) {
+                throw new DataAccessException(ex);
+            }
+            return task;
+        }
+
+        private void executeOne(long intendedTime, int batchSize, PhaseTimer.Tracker phaseTracker,
+                                RetryState retryState) {
+            final long invocationTime = System.nanoTime();
 
-                try {
-                    task.executeOne(batchSize);
-                    metrics.markSuccess(Duration.between(invocationTime, Instant.now()));
-                    fails.set(0);
-                } catch (Throwable ex) {
-                    final Duration callTime = Duration.between(invocationTime, Instant.now());
+            phaseTracker.begin();
+
+            try {
+                final int rows = task.executeOne(batchSize);
+                final long completionTime = System.nanoTime();
+                phaseTracker.end();
+                batchSizeController.record(completionTime - invocationTime, batchSize);
+                if (schedule.isOpenLoop()) {
+                    metrics.markSuccess(completionTime - intendedTime,
+                            completionTime - invocationTime, rows);
+                } else {
+                    metrics.markSuccess(completionTime - invocationTime, rows);
+                }
+                retryState.reset();
+            } catch (Throwable ex) {
+                final long completionTime = System.nanoTime();
 
+                synchronized (problems) {
                     if (problems.size() >= 20) {
                         problems.removeLast();
                     }
                     problems.addFirst(Problem.from(ex));
+                }
 
-                    Throwable cause = getMostSpecificCause(ex);
-
-                    boolean isTransient = false;
-                    if (cause instanceof SQLException) {
-                        String sqlState = ((SQLException) cause).getSQLState();
-                        if (EXCEPTION_CLASSIFIER.isTransient((SQLException) cause)) {
-                            logger.warn("Transient SQL exception in %s: [%s]: [%s]"
-                                    .formatted(name, sqlState, cause));
-                            isTransient = true;
-                        } else {
-                            logger.error("Non-transient SQL exception in %s: [%s]: [%s]"
-                                    .formatted(name, sqlState, cause));
-                        }
-                    } else if (ex instanceof RecoverableException) {
-                        logger.warn("Recoverable exception in %s: [%s]"
-                                .formatted(name, ex));
+                Throwable cause = getMostSpecificCause(ex);
+
+                boolean isTransient = false;
+                if (cause instanceof SQLException) {
+                    String sqlState = ((SQLException) cause).getSQLState();
+                    if (EXCEPTION_CLASSIFIER.isTransient((SQLException) cause)) {
+                        logger.warn("Transient SQL exception in %s: [%s]: [%s]"
+                                .formatted(name, sqlState, cause));
                         isTransient = true;
                     } else {
-                        throw new DataAccessException(ex);
+                        logger.error("Non-transient SQL exception in %s: [%s]: [%s]"
+                                .formatted(name, sqlState, cause));
                     }
+                } else if (ex instanceof RecoverableException) {
+                    logger.warn("Recoverable exception in %s: [%s]"
+                            .formatted(name, ex));
+                    isTransient = true;
+                } else {
+                    throw new DataAccessException(ex);
+                }
+
+                if (schedule.isOpenLoop()) {
+                    metrics.markFail(completionTime - intendedTime,
+                            completionTime - invocationTime, isTransient);
+                } else {
+                    metrics.markFail(completionTime - invocationTime, isTransient);
+                }
 
-                    metrics.markFail(callTime, isTransient);
+                backoff(retryState);
+            }
+        }
+
+        private void backoff(RetryState retryState) {
+            final long startTime = System.nanoTime();
+
+            long delay = retryPolicy.getDelayMillis(++retryState.attempt, retryState.previousDelay);
+            retryState.previousDelay = delay;
 
-                    backoffDelayWithJitter(fails.incrementAndGet());
+            try {
+                if (delay > 0) {
+                    TimeUnit.MILLISECONDS.sleep(delay);
                 }
+                retryBudget.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            return task;
-        });
 
-        workloads.add(new Workload<>(monotonicId.incrementAndGet(), name, future, metrics, problems));
+            metrics.markRetryDelay(System.nanoTime() - startTime);
+        }
     }
 
     public void shutdownAndWait() {
@@ -138,7 +414,7 @@ public class WorkloadManager {
 
         workloads.forEach((workload) -> {
             try {
-                workload.getFuture().get().teardownTask();
+                workload.getFuture().get();
                 workload.setCompletion(Optional.empty());
                 logger.info("Finished %s successfully".formatted(workload.getName()));
             } catch (InterruptedException e) {
@@ -151,6 +427,18 @@ public class WorkloadManager {
             }
         });
 
+        // Teardown each task once after all its workers are done
+        workloads.stream()
+                .map(Workload::getTask)
+                .distinct()
+                .forEach(task -> {
+                    try {
+                        task.teardownTask();
+                    } catch (RuntimeException e) {
+                        logger.warn("Teardown of %s failed".formatted(task.getClass().getSimpleName()), e);
+                    }
+                });
+
         try {
             if (!executorService.awaitTermination(10, TimeUnit.SECONDS)) {
                 executorService.shutdownNow();
@@ -177,29 +465,17 @@ public class WorkloadManager {
                 .toList();
     }
 
+    /**
+     * Aggregate the metrics of all workloads in a given state. Latency
+     * histograms are merged so percentiles reflect all calls across workloads.
+     *
+     * @param status the workload status
+     * @return aggregated metrics
+     */
     public Metrics getMetricsAggregate(WorkloadStatus status) {
-        List<Metrics> metrics = getWorkloads(status)
+        return Metrics.aggregate(getWorkloads(status)
                 .stream()
                 .map(Workload::getMetrics)
-                .toList();
-        return Metrics.builder()
-                .withUpdateTime(Instant.now())
-                .withMeanTimeMillis(metrics.stream()
-                        .mapToDouble(Metrics::getAvgTime).average().orElse(0))
-                .withMinTimeMillis(metrics.stream()
-                        .mapToDouble(Metrics::getMinTime).average().orElse(0))
-                .withMaxTimeMillis(metrics.stream()
-                        .mapToDouble(Metrics::getMaxTime).average().orElse(0))
-                .withOps(metrics.stream().mapToDouble(Metrics::getOpsPerSec).sum(),
-                        metrics.stream().mapToDouble(Metrics::getOpsPerMin).sum())
-                .withP50(metrics.stream().mapToDouble(Metrics::getP50).average().orElse(0))
-                .withP90(metrics.stream().mapToDouble(Metrics::getP90).average().orElse(0))
-                .withP95(metrics.stream().mapToDouble(Metrics::getP95).average().orElse(0))
-                .withP99(metrics.stream().mapToDouble(Metrics::getP99).average().orElse(0))
-                .withP999(metrics.stream().mapToDouble(Metrics::getP999).average().orElse(0))
-                .withSuccess(metrics.stream().mapToInt(Metrics::getSuccess).sum())
-                .withFails(metrics.stream().mapToInt(Metrics::getTransientFail).sum(),
-                        metrics.stream().mapToInt(Metrics::getNonTransientFail).sum())
-                .build();
+                .toList());
     }
 }